@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.Book;
+import model.Catalog;
+
+/**
+ * Measures lookups, searches and sorted listings on the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Catalog catalog;
+    private List<Book> books;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = Fixtures.books(size, 1);
+        catalog = Fixtures.catalog(books);
+    }
+
+    @Benchmark
+    public Optional<Book> findBook() {
+        Book book = books.get(next++ % size);
+        return catalog.findBook(book.getTitle(), book.getAuthor());
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        return catalog.searchByTitle("arden");
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthor() {
+        return catalog.searchByAuthor("teodora");
+    }
+
+    @Benchmark
+    public List<Book> sortedByTitle() {
+        return catalog.getBooksSortedByTitle();
+    }
+
+    @Benchmark
+    public List<Book> sortedByAuthor() {
+        return catalog.getBooksSortedByAuthor();
+    }
+}
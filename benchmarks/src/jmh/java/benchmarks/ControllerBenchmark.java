@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import controller.LibraryController;
+import model.Book;
+
+/**
+ * Measures the controller paths behind the search and sorted catalog menu entries,
+ * including turning the results into the text the view displays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControllerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private LibraryController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Book> books = Fixtures.books(size, 1);
+        controller = new LibraryController(new InMemoryPersistency(books, Collections.emptyList()), new SilentView());
+    }
+
+    @Benchmark
+    public String filterBooksByTitle() {
+        return controller.searchByTitle("arden").stream()
+                .map(Book::getTitle)
+                .collect(Collectors.joining(", "));
+    }
+
+    @Benchmark
+    public String filterBooksByAuthor() {
+        return controller.searchByAuthor("teodora").stream()
+                .map(book -> book.getAuthor() + " - " + book.getTitle())
+                .collect(Collectors.joining(", "));
+    }
+
+    @Benchmark
+    public String showSortedCatalogByTitle() {
+        return controller.getBooksSortedByTitle().stream()
+                .map(Book::getTitle)
+                .collect(Collectors.joining(", "));
+    }
+
+    @Benchmark
+    public String showSortedCatalogByAuthor() {
+        return controller.getBooksSortedByAuthor().stream()
+                .map(book -> book.getAuthor() + " - " + book.getTitle())
+                .collect(Collectors.joining(", "));
+    }
+}
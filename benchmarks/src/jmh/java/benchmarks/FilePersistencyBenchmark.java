@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.Book;
+import model.Reader;
+import service.FilePersistency;
+
+/**
+ * Measures saving the whole library to the data files and loading it back, in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FilePersistencyBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Path directory;
+    private FilePersistency persistency;
+    private List<Book> books;
+    private List<Reader> readers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("city-library-bench");
+        persistency = new FilePersistency(directory, false);
+        books = Fixtures.books(size, 3);
+        readers = Fixtures.readers(size / 10, 3, books);
+        persistency.saveBooks(books);
+        persistency.saveReaders(readers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        persistency.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void save() throws Exception {
+        persistency.saveBooks(books);
+        persistency.saveReaders(readers);
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) throws Exception {
+        blackhole.consume(persistency.loadBooks());
+        blackhole.consume(persistency.loadReaders());
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Book;
+import model.Catalog;
+import model.Reader;
+
+/**
+ * Builds the synthetic catalogs and readers the benchmarks run against.
+ * The data is generated from a fixed seed, so every run measures the same catalog.
+ */
+final class Fixtures {
+    private static final String[] WORDS = {
+        "Shadow", "River", "Winter", "Garden", "Empire", "Silent", "Stone", "Night", "Crimson", "Harbor",
+        "Glass", "Kingdom", "Storm", "Letters", "Orchard", "Machine", "Frontier", "Lantern", "Ocean", "Memory"
+    };
+    private static final String[] NAMES = {
+        "Anna", "Boris", "Clara", "Dimitar", "Elena", "Felix", "Galina", "Hugo", "Irina", "Jonas",
+        "Katya", "Lev", "Maria", "Nikola", "Olga", "Petar", "Radka", "Stefan", "Teodora", "Viktor"
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Generates distinct books, each with the given number of copies.
+     */
+    static List<Book> books(int count, int copies) {
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String author = NAMES[random.nextInt(NAMES.length)] + " " + NAMES[random.nextInt(NAMES.length)] + "ova";
+            books.add(new Book(title, author, copies, copies));
+        }
+        return books;
+    }
+
+    static Catalog catalog(List<Book> books) {
+        Catalog catalog = new Catalog();
+        books.forEach(catalog::addBook);
+        return catalog;
+    }
+
+    /**
+     * Generates readers that each borrow the given number of books, spread over the catalog.
+     */
+    static List<Reader> readers(int count, int loansPerReader, List<Book> books) {
+        List<Reader> readers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Reader reader = new Reader("Reader " + i);
+            for (int j = 0; j < loansPerReader; j++) {
+                reader.restoreLoan(books.get((i * loansPerReader + j) % books.size()));
+            }
+            readers.add(reader);
+        }
+        return readers;
+    }
+}
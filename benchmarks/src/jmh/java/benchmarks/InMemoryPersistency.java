@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Book;
+import model.Reader;
+import model.ReaderRegistry;
+import service.Persistency;
+
+/**
+ * A persistency that loads a fixed set of books and readers and discards every save,
+ * so controller benchmarks measure the controller rather than the disk.
+ */
+final class InMemoryPersistency implements Persistency {
+    private final List<Book> books;
+    private final List<Reader> readers;
+
+    InMemoryPersistency(List<Book> books, List<Reader> readers) {
+        this.books = books;
+        this.readers = readers;
+    }
+
+    @Override
+    public void saveBooks(List<Book> books) {
+    }
+
+    @Override
+    public void saveReaders(List<Reader> readers) {
+    }
+
+    @Override
+    public List<Book> loadBooks() {
+        return new ArrayList<>(books);
+    }
+
+    @Override
+    public ReaderRegistry loadReaders() {
+        ReaderRegistry registry = new ReaderRegistry();
+        readers.forEach(registry::register);
+        return registry;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public String getType() {
+        return "Memory";
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import model.Book;
+import model.Catalog;
+import model.Reader;
+
+/**
+ * Measures a borrow followed by a return, for a reader that already holds a number of loans.
+ * The contended variant lets several threads borrow and return copies of the same book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoanBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        @Param({"1000", "100000"})
+        public int size;
+
+        @Param({"0", "100", "5000"})
+        public int loans;
+
+        Catalog catalog;
+        List<Book> books;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            books = Fixtures.books(size, 1_000_000);
+            catalog = Fixtures.catalog(books);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        Reader reader;
+        Book book;
+
+        @Setup(Level.Trial)
+        public void setUp(Library library) {
+            reader = Fixtures.readers(1, library.loans, library.books).get(0);
+            book = library.books.get(library.books.size() / 2);
+        }
+    }
+
+    @Benchmark
+    public Reader borrowAndReturn(Borrower borrower) {
+        borrower.reader.borrowBook(borrower.book);
+        borrower.reader.returnBook(borrower.book);
+        return borrower.reader;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Reader borrowAndReturnContended(Borrower borrower) {
+        borrower.reader.borrowBook(borrower.book);
+        borrower.reader.returnBook(borrower.book);
+        return borrower.reader;
+    }
+}
@@ -0,0 +1,16 @@
+package benchmarks;
+
+import view.MessageView;
+
+/**
+ * A view that shows nothing, for driving the controller's public operations.
+ */
+final class SilentView implements MessageView {
+    @Override
+    public void displayPropertiesMessage(String key) {
+    }
+
+    @Override
+    public void displayMessage(String message) {
+    }
+}
@@ -1,7 +1,14 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.Properties;
 
@@ -12,12 +19,18 @@ import view.*;
 /**
  * The main class of the CityLibrary application.
  * It initializes the persistency, view, and controller objects, and runs the library controller.
+ * With {@code mode=service} in config.properties, the controller is served over HTTP instead of the console
+ * until the process is stopped. Started as {@code App batch [script]}, it runs the commands of the script,
+ * or of standard input when no script is given, and exits.
+ * Unless {@code metrics.enabled=false}, operation and persistency latencies are published over JMX
+ * and, if {@code metrics.logFile} is set, appended to that file every {@code metrics.logIntervalSeconds}.
+ * Closing the controller closes the persistency and then the catalog, which may be kept off the heap.
  */
 public class App {
     /**
      * The main method of the CityLibrary application.
      * Initializes the persistency, view, and controller objects, and runs the library controller.
-     * @param args the command line arguments
+     * @param args the command line arguments: {@code batch} followed by an optional script file runs a batch script
      * @throws ClassNotFoundException if the specified class cannot be found
      * @throws IOException if an I/O error occurs
      * @throws SQLException
@@ -26,6 +39,9 @@ public class App {
         Properties prop = new Properties();
         InputStream input = null;
         Persistency persistency = null;
+        LibraryController controller = null;
+        MetricsLog metricsLog = null;
+        PrintWriter batchOut = null;
 
         try {
             input = new FileInputStream("config.properties");
@@ -34,16 +50,54 @@ public class App {
             String persistenceType = prop.getProperty("persistency");
 
             if (persistenceType.equals("db")) {
-                persistency = new DBPersistency();
+                persistency = new DBPersistency(prop);
             } else if (persistenceType.equals("file")) {
                 persistency = new FilePersistency();
+            } else if (persistenceType.equals("journal")) {
+                FilePersistency filePersistency = new FilePersistency(true);
+                filePersistency.startCompaction(
+                        Long.parseLong(prop.getProperty("journal.compaction.maxBytes", "4194304")),
+                        Long.parseLong(prop.getProperty("journal.compaction.maxRecords", "10000")),
+                        Long.parseLong(prop.getProperty("journal.compaction.intervalSeconds", "300")));
+                persistency = filePersistency;
             } else {
-                throw new IllegalArgumentException("Invalid persistency type in config.properties. Only 'db' and 'file' are allowed.");
+                throw new IllegalArgumentException("Invalid persistency type in config.properties. Only 'db', 'file' and 'journal' are allowed.");
             }
 
-            View view = new ConsoleView();
-            LibraryController controller = new LibraryController(persistency, view);
-            controller.runLibraryController();
+            boolean metricsEnabled = Boolean.parseBoolean(prop.getProperty("metrics.enabled", "true"));
+            if (metricsEnabled) {
+                persistency = new InstrumentedPersistency(persistency);
+            }
+
+            if (Boolean.parseBoolean(prop.getProperty("writeBehind", "false"))) {
+                persistency = new WriteBehindPersistency(persistency,
+                        Integer.parseInt(prop.getProperty("writeBehind.capacity", "10000")));
+            }
+
+            boolean batch = args.length > 0 && args[0].equals("batch");
+            // In batch mode, messages of the controller go to the same writer as the results of the commands.
+            if (batch) {
+                batchOut = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+            }
+            controller = batch
+                    ? new LibraryController(persistency, new BatchView(batchOut))
+                    : new LibraryController(persistency, new ConsoleView());
+            if (metricsEnabled) {
+                controller.publishMetrics();
+                String metricsLogFile = prop.getProperty("metrics.logFile");
+                if (metricsLogFile != null) {
+                    metricsLog = new MetricsLog(Paths.get(metricsLogFile),
+                            Long.parseLong(prop.getProperty("metrics.logIntervalSeconds", "60")));
+                    metricsLog.start();
+                }
+            }
+            if (batch) {
+                runBatch(controller, prop, batchOut, args.length > 1 ? args[1] : null);
+            } else if ("service".equals(prop.getProperty("mode", "console"))) {
+                runService(controller, prop);
+            } else {
+                controller.runLibraryController();
+            }
 
         } catch (FileNotFoundException e) {
             System.out.println("File not found.");
@@ -57,9 +111,60 @@ public class App {
                     e.printStackTrace();
                 }
             }
-            if (persistency != null) {
-                persistency.close();
+            try {
+                if (controller != null) {
+                    controller.close();
+                } else if (persistency != null) {
+                    persistency.close();
+                }
+            } finally {
+                // The metrics log and the batch output are closed even if saving or closing the library failed.
+                if (metricsLog != null) {
+                    metricsLog.close();
+                }
+                if (batchOut != null) {
+                    batchOut.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a batch script from the given file, or from standard input if the file name is null,
+     * and writes the results to the given writer.
+     */
+    private static void runBatch(LibraryController controller, Properties prop, PrintWriter out, String scriptFilename) throws IOException {
+        InputStream scriptInput = scriptFilename == null ? System.in : new FileInputStream(scriptFilename);
+        BatchRunner runner = new BatchRunner(controller, out,
+                Integer.parseInt(prop.getProperty("batch.commitInterval", "1000")));
+        try (BufferedReader script = new BufferedReader(new InputStreamReader(scriptInput, StandardCharsets.UTF_8))) {
+            runner.run(script);
+        }
+    }
+
+    /**
+     * Serves the controller over HTTP until the process is asked to stop.
+     * The shutdown hook waits for the main thread, so the persistency is closed before the process exits.
+     */
+    private static void runService(LibraryController controller, Properties prop) throws IOException {
+        LibraryHttpServer server = new LibraryHttpServer(controller,
+                Integer.parseInt(prop.getProperty("service.port", "8080")),
+                Integer.parseInt(prop.getProperty("service.backlog", "0")));
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }));
+        server.start();
+        System.out.println("Serving the library on port " + server.getPort() + ".");
+        try {
+            server.awaitStop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
\ No newline at end of file
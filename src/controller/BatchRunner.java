@@ -0,0 +1,203 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import model.Book;
+
+/**
+ * Runs a script of library operations against a {@link LibraryController} without prompting.
+ * <p>
+ * Every line holds one command and its arguments, separated by {@code |}:
+ * <pre>
+ * register|name
+ * add|title|author
+ * borrow|reader|title|author
+ * return|reader|title|author
+ * import-books|file
+ * import-readers|file
+ * export-books|file
+ * export-readers|file
+ * </pre>
+ * The import and export commands read and write CSV files through {@link CsvTransfer}.
+ * Blank lines and lines starting with {@code #} are skipped. Invalid lines and failed operations are reported
+ * and the run continues with the next line. Saves are deferred and written every {@code commitInterval} commands
+ * and at the end of the script; a failed save is reported after the line that triggered it.
+ * A summary with the throughput is printed when the script is done.
+ */
+public class BatchRunner {
+    private static final String SEPARATOR = "\\|";
+
+    private final LibraryController controller;
+    private final PrintWriter out;
+    private final int commitInterval;
+    private final CsvTransfer csv;
+
+    private int succeeded;
+    private int failed;
+    private int failedSaves;
+
+    /**
+     * Creates a batch runner.
+     * @param controller the controller to run the commands against
+     * @param out the writer that receives the result of every command and the summary
+     * @param commitInterval the number of commands after which the collected changes are saved
+     */
+    public BatchRunner(LibraryController controller, PrintWriter out, int commitInterval) {
+        if (commitInterval < 1) {
+            throw new IllegalArgumentException("Commit interval must be positive");
+        }
+        this.controller = controller;
+        this.out = out;
+        this.commitInterval = commitInterval;
+        this.csv = new CsvTransfer(controller, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs every command of the script and prints the summary.
+     * @param script the script to run
+     * @return true if every command and every save succeeded, false otherwise
+     * @throws IOException if the script cannot be read
+     */
+    public boolean run(BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        int lineNumber = 0;
+        int sinceCommit = 0;
+        controller.deferSaves();
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                runLine(lineNumber, line);
+                if (++sinceCommit == commitInterval) {
+                    try {
+                        controller.saveDeferredChanges();
+                    } catch (SaveFailedException e) {
+                        reportFailedSave(lineNumber, e);
+                    }
+                    sinceCommit = 0;
+                }
+            }
+        } finally {
+            try {
+                controller.stopDeferringSaves();
+            } catch (SaveFailedException e) {
+                reportFailedSave(lineNumber, e);
+            }
+        }
+        printSummary(System.nanoTime() - start);
+        return failed == 0 && failedSaves == 0;
+    }
+
+    private void reportFailedSave(int lineNumber, SaveFailedException e) {
+        failedSaves++;
+        out.print(lineNumber);
+        out.print(": ERROR ");
+        out.println(e.getMessage());
+    }
+
+    private void runLine(int lineNumber, String line) {
+        try {
+            String result = execute(line.split(SEPARATOR, -1));
+            succeeded++;
+            out.print(lineNumber);
+            out.print(": OK ");
+            out.println(result);
+        } catch (RuntimeException e) {
+            // Any failure of one command is that line's result; the rest of the script still runs.
+            failed++;
+            out.print(lineNumber);
+            out.print(": ERROR ");
+            out.println(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private String execute(String[] fields) {
+        String command = fields[0].trim();
+        switch (command) {
+            case "register":
+                String name = argument(fields, 1, 1);
+                if (!controller.registerReader(name)) {
+                    throw new IllegalStateException("Reader already exists: " + name);
+                }
+                return "registered " + name;
+            case "add":
+                return "added " + describe(controller.addBook(argument(fields, 1, 2), argument(fields, 2, 2)));
+            case "borrow":
+                return "borrowed " + describe(controller.borrowBook(
+                        argument(fields, 1, 3), argument(fields, 2, 3), argument(fields, 3, 3)));
+            case "return":
+                return "returned " + describe(controller.returnBook(
+                        argument(fields, 1, 3), argument(fields, 2, 3), argument(fields, 3, 3)));
+            case "import-books":
+            case "import-readers":
+            case "export-books":
+            case "export-readers":
+                return transfer(command, argument(fields, 1, 1));
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private String transfer(String command, String filename) {
+        try {
+            if (command.startsWith("export")) {
+                try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+                    int count = command.equals("export-books") ? csv.exportBooks(writer) : csv.exportReaders(writer);
+                    return "exported " + count + (command.equals("export-books") ? " books" : " readers") + " to " + filename;
+                }
+            }
+            CsvTransfer.Result result;
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+                result = command.equals("import-books") ? csv.importBooks(reader) : csv.importReaders(reader);
+            }
+            StringBuilder message = new StringBuilder()
+                    .append("imported ").append(result.getImported()).append(" rows from ").append(filename);
+            if (result.getFailed() > 0) {
+                message.append(", ").append(result.getFailed()).append(" failed");
+                for (String error : result.getErrors()) {
+                    message.append(System.lineSeparator()).append("    ").append(error);
+                }
+            }
+            return message.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String argument(String[] fields, int index, int count) {
+        if (fields.length != count + 1) {
+            throw new IllegalArgumentException(fields[0].trim() + " expects " + count + " argument(s), got " + (fields.length - 1));
+        }
+        String value = fields[index].trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Argument " + index + " of " + fields[0].trim() + " is empty");
+        }
+        return value;
+    }
+
+    private static String describe(Book book) {
+        return book.getTitle() + " by " + book.getAuthor() + " (Available: " + book.getAvailableQuantity() + ")";
+    }
+
+    private void printSummary(long elapsedNanos) {
+        int total = succeeded + failed;
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%d commands, %d succeeded, %d failed in %.3f s (%.1f commands/s)%n",
+                total, succeeded, failed, seconds, seconds > 0 ? total / seconds : 0.0);
+        if (failedSaves > 0) {
+            out.printf("%d saves failed%n", failedSaves);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,384 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Book;
+import model.Reader;
+
+/**
+ * Imports and exports the catalog and the readers as CSV files.
+ * <p>
+ * Books are read from a file with a header naming at least the {@code title} and {@code author} columns.
+ * The number of copies comes from a {@code quantity} or {@code totalQuantity} column and defaults to 1.
+ * Every row goes through the same rules as adding a book by hand: a row for a book that is already in the
+ * catalog adds copies to it. Readers are read from {@code name,title,author} rows. A row registers the reader
+ * if needed and, when it names a book, lends one copy of that book to the reader.
+ * <p>
+ * Files are streamed. The reading thread only splits the input into records. The records are parsed and applied
+ * in chunks on a pool of worker threads, and only a few chunks are held in memory at a time, so memory use does
+ * not depend on the file size. Saves are deferred while a file is imported and written once per group of chunks.
+ */
+public class CsvTransfer {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_SAVE = 16;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final LibraryController controller;
+    private final int threads;
+
+    /**
+     * Creates a CSV transfer for the given controller.
+     * @param controller the controller whose catalog and readers are imported and exported
+     * @param threads the number of threads that parse and apply imported records
+     */
+    public CsvTransfer(LibraryController controller, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.controller = controller;
+        this.threads = threads;
+    }
+
+    /**
+     * Imports books from CSV.
+     * @param in the CSV input, starting with the header
+     * @return the outcome of the import
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the header lacks a required column
+     */
+    public Result importBooks(BufferedReader in) throws IOException {
+        return importRecords(in, new String[] {"title", "author"}, row -> {
+            String quantity = row.get("quantity");
+            if (quantity == null) {
+                quantity = row.get("totalQuantity");
+            }
+            int copies = quantity == null || quantity.isEmpty() ? 1 : Integer.parseInt(quantity);
+            controller.addBook(row.require("title"), row.require("author"), copies);
+        });
+    }
+
+    /**
+     * Imports readers and their loans from CSV.
+     * The books must already be in the catalog, and every loan takes one available copy.
+     * @param in the CSV input, starting with the header
+     * @return the outcome of the import
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the header lacks a required column
+     */
+    public Result importReaders(BufferedReader in) throws IOException {
+        return importRecords(in, new String[] {"name"}, row -> {
+            String name = row.require("name");
+            controller.registerReader(name);
+            String title = row.get("title");
+            if (title != null && !title.isEmpty()) {
+                controller.borrowBook(name, title, row.require("author"));
+            }
+        });
+    }
+
+    /**
+     * Exports the catalog as CSV with the columns {@code title,author,availableQuantity,totalQuantity}.
+     * @param out the writer to write to
+     * @return the number of books written
+     * @throws IOException if an I/O error occurs while writing
+     */
+    public int exportBooks(Writer out) throws IOException {
+        out.write("title,author,availableQuantity,totalQuantity\n");
+        int count = 0;
+        for (Book book : controller.getBooks()) {
+            writeField(out, book.getTitle());
+            out.write(',');
+            writeField(out, book.getAuthor());
+            out.write(',');
+            out.write(Integer.toString(book.getAvailableQuantity()));
+            out.write(',');
+            out.write(Integer.toString(book.getTotalQuantity()));
+            out.write('\n');
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Exports the readers as CSV with the columns {@code name,title,author}, one row per loan.
+     * Readers without loans are written with empty title and author.
+     * @param out the writer to write to
+     * @return the number of readers written
+     * @throws IOException if an I/O error occurs while writing
+     */
+    public int exportReaders(Writer out) throws IOException {
+        out.write("name,title,author\n");
+        int count = 0;
+        for (Reader reader : controller.getReaders()) {
+            List<Book> borrowedBooks = reader.getBorrowedBooks();
+            if (borrowedBooks.isEmpty()) {
+                writeField(out, reader.getName());
+                out.write(",,\n");
+            }
+            for (Book book : borrowedBooks) {
+                writeField(out, reader.getName());
+                out.write(',');
+                writeField(out, book.getTitle());
+                out.write(',');
+                writeField(out, book.getAuthor());
+                out.write('\n');
+            }
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    private Result importRecords(BufferedReader in, String[] requiredColumns, RowHandler handler) throws IOException {
+        LineCounter lines = new LineCounter();
+        String header = readRecord(in, lines);
+        if (header == null) {
+            throw new IllegalArgumentException("The CSV input is empty");
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseRecord(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        for (String column : requiredColumns) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("The CSV header has no " + column + " column");
+            }
+        }
+
+        Result result = new Result();
+        boolean startedDeferring = controller.deferSaves();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        Semaphore chunksInFlight = new Semaphore(threads * 2);
+        try {
+            int chunks = 0;
+            List<String> records = new ArrayList<>(CHUNK_SIZE);
+            int[] lineNumbers = new int[CHUNK_SIZE];
+            String record;
+            while ((record = readRecord(in, lines)) != null) {
+                if (record.isEmpty()) {
+                    continue;
+                }
+                lineNumbers[records.size()] = lines.recordStart;
+                records.add(record);
+                if (records.size() == CHUNK_SIZE) {
+                    submit(workers, chunksInFlight, records, lineNumbers, columns, handler, result);
+                    records = new ArrayList<>(CHUNK_SIZE);
+                    lineNumbers = new int[CHUNK_SIZE];
+                    if (++chunks % CHUNKS_PER_SAVE == 0) {
+                        controller.saveDeferredChanges();
+                    }
+                }
+            }
+            if (!records.isEmpty()) {
+                submit(workers, chunksInFlight, records, lineNumbers, columns, handler, result);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        } finally {
+            workers.shutdownNow();
+            if (startedDeferring) {
+                controller.stopDeferringSaves();
+            } else {
+                controller.saveDeferredChanges();
+            }
+        }
+        return result;
+    }
+
+    private static void submit(ExecutorService workers, Semaphore chunksInFlight, List<String> records, int[] lineNumbers,
+            Map<String, Integer> columns, RowHandler handler, Result result) throws InterruptedException {
+        chunksInFlight.acquire();
+        workers.execute(() -> {
+            try {
+                for (int i = 0; i < records.size(); i++) {
+                    try {
+                        handler.apply(new Row(columns, parseRecord(records.get(i))));
+                        result.imported.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        result.fail(lineNumbers[i], e.getMessage());
+                    }
+                }
+            } finally {
+                chunksInFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Reads one CSV record, which spans several lines when a quoted field contains line breaks.
+     * @return the record without its final line break, or null at the end of the input
+     */
+    private static String readRecord(BufferedReader in, LineCounter lines) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            return null;
+        }
+        lines.recordStart = ++lines.current;
+        if (countQuotes(line) % 2 == 0) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0 && (line = in.readLine()) != null) {
+            lines.current++;
+            record.append('\n').append(line);
+            quotes += countQuotes(line);
+        }
+        return record.toString();
+    }
+
+    private static int countQuotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    private static List<String> parseRecord(String record) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * The outcome of an import: the number of imported rows and the rows that failed.
+     */
+    public static final class Result {
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        private void fail(int lineNumber, String message) {
+            if (failed.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNumber + ": " + message);
+            }
+        }
+
+        /**
+         * Returns the number of rows that were imported.
+         * @return the number of imported rows
+         */
+        public int getImported() {
+            return imported.get();
+        }
+
+        /**
+         * Returns the number of rows that could not be imported.
+         * @return the number of failed rows
+         */
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns the errors of the first failed rows, at most 20 of them.
+         * @return the error messages, prefixed with their line numbers
+         */
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+    }
+
+    /**
+     * Applies one parsed row.
+     */
+    private interface RowHandler {
+        void apply(Row row);
+    }
+
+    /**
+     * The fields of one row, looked up by column name.
+     */
+    private static final class Row {
+        private final Map<String, Integer> columns;
+        private final List<String> fields;
+
+        Row(Map<String, Integer> columns, List<String> fields) {
+            this.columns = columns;
+            this.fields = fields;
+        }
+
+        String get(String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? null : fields.get(index).trim();
+        }
+
+        String require(String column) {
+            String value = get(column);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Missing " + column);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Tracks the line numbers of the input, so errors can point at the line where a record starts.
+     */
+    private static final class LineCounter {
+        private int current;
+        private int recordStart;
+    }
+}
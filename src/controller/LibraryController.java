@@ -5,19 +5,28 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Function;
 
 import model.Book;
 import model.Catalog;
 import model.Reader;
+import model.ReaderRegistry;
+import service.LatencyRecorder;
+import service.Metrics;
 import service.Persistency;
+import view.MessageView;
 import view.View;
 
 /**
@@ -25,15 +34,29 @@ import view.View;
  * It provides methods for registering readers, adding books to the catalog, displaying the catalog, searching for books,
  * borrowing and returning books, and changing the language of the user interface.
  * It also handles the persistence of data to files.
+ * The operations are available both through the interactive menu and as public methods that take their input
+ * as arguments, so other front-ends such as {@link LibraryHttpServer} can call them. The public methods are
+ * safe to call from several threads at once, and the latency of each of them is recorded; see {@link #publishMetrics()}.
+ * <p>
+ * With {@code catalog.store=offheap} in config.properties, the catalog keeps its books outside the Java heap,
+ * in memory-mapped files in {@code catalog.storeDirectory} if that is set. A catalog that was closed cleanly by
+ * {@link #close()} is attached again on the next start, and its books are not loaded from the persistency,
+ * provided the persistency still has the fingerprint it had when the catalog was closed. A run in which a save
+ * failed does not mark the catalog as closed cleanly, so the next start loads the books again.
  */
 public class LibraryController {
     private static final String CONFIG_FILENAME = "config.properties";
 
     private boolean exit = false;
     private Catalog catalog;
-    private List<Reader> readers;
+    private ReaderRegistry readers;
     private final Persistency persistency;
+    private final MessageView messages;
     private final View view;
+    private final Object snapshotLock = new Object();
+    private volatile DeferredSaves deferredSaves;
+    private volatile boolean saveFailed;
+    private final Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
 
     /**
      * This class represents a controller for the library system, responsible for managing the
@@ -46,54 +69,159 @@ public class LibraryController {
      * @throws IOException            if an I/O error occurs during deserialization
      */
     public LibraryController(Persistency persistency, View view) throws ClassNotFoundException, IOException {
+        this(persistency, view, view);
+    }
+
+    /**
+     * Constructs a controller without an interactive view, for front-ends that only call the public operations,
+     * such as batch scripts. Such a controller cannot run the interactive menu.
+     *
+     * @param persistency the persistency object used to load and save data
+     * @param messages    the view that receives the messages of the controller
+     * @throws ClassNotFoundException if the specified class cannot be found during deserialization
+     * @throws IOException            if an I/O error occurs during deserialization
+     */
+    public LibraryController(Persistency persistency, MessageView messages) throws ClassNotFoundException, IOException {
+        this(persistency, messages, null);
+    }
+
+    private LibraryController(Persistency persistency, MessageView messages, View view)
+            throws ClassNotFoundException, IOException {
         this.persistency = persistency;
+        this.messages = messages;
         this.view = view;
-        this.catalog = new Catalog();
-        this.readers = new ArrayList<>();
+        this.catalog = createCatalog();
+        this.readers = new ReaderRegistry();
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyRecorder());
+        }
         loadData();
     }
 
+    /**
+     * Publishes the latency of every operation as {@code city-library:type=Operation,name=<operation>}
+     * and the size of the catalog and the reader list as {@code city-library:type=Library,name=statistics}.
+     */
+    public void publishMetrics() {
+        latencies.forEach((operation, recorder) -> Metrics.register("Operation", operation.metricName, recorder));
+        Metrics.register("Library", "statistics", new LibraryStatistics(catalog, readers));
+    }
+
+    private void record(Operation operation, long startNanos, boolean succeeded) {
+        latencies.get(operation).recordSince(startNanos, succeeded);
+    }
+
     /**
      * Saves the current state of the library by persisting the books catalog and readers list to files.
+     * The reader is saved even if saving the book fails.
+     * @throws SaveFailedException if the book or the reader could not be saved
      */
     private void saveLibraryState(Book book, Reader reader) {
-        saveBooksState(book);
-        saveReadersState(reader);
+        try {
+            saveBooksState(book);
+        } finally {
+            saveReadersState(reader);
+        }
     }
 
     private void saveBooksState(Book book) {
-        List<Book> booksToBeSaved;
-
-        if (persistency.getType().equals("DB")) {
-            booksToBeSaved = Collections.singletonList(book);
+        DeferredSaves deferred = deferredSaves;
+        if (deferred != null) {
+            deferred.addBook(book);
         } else {
-            booksToBeSaved = catalog.getBooks();
+            saveBooksState(Collections.singletonList(book));
         }
+    }
 
+    private void saveBooksState(List<Book> changedBooks) {
         try {
-            persistency.saveBooks(booksToBeSaved);
-        } catch (IOException e) {
-            view.displayMessage("Failed to save book data: " + e.getMessage());
-        } catch (SQLException e) {
-            e.printStackTrace();
+            if (persistency.isIncremental()) {
+                // Incremental persistencies read and write each book under a lock of their own,
+                // so concurrent saves of the same book reach storage in the order they read it.
+                persistency.saveBooks(changedBooks);
+            } else {
+                // Whole-catalog saves are serialized so that an older snapshot never overwrites a newer one.
+                // A write-behind persistency takes the snapshot on its writer thread instead.
+                synchronized (snapshotLock) {
+                    persistency.saveAllBooks(catalog::getBooks);
+                }
+            }
+        } catch (IOException | SQLException e) {
+            saveFailed = true;
+            throw new SaveFailedException("Failed to save book data: " + e.getMessage(), e);
         }
     }
     
     private void saveReadersState(Reader reader) {
-        List<Reader> readersToBeSaved;
-
-        if (persistency.getType().equals("DB")) {
-            readersToBeSaved = Collections.singletonList(reader);
+        DeferredSaves deferred = deferredSaves;
+        if (deferred != null) {
+            deferred.addReader(reader);
         } else {
-            readersToBeSaved = readers;
+            saveReadersState(Collections.singletonList(reader));
         }
+    }
 
+    private void saveReadersState(List<Reader> changedReaders) {
         try {
-            persistency.saveReaders(readersToBeSaved);
-        } catch (IOException e) {
-            view.displayMessage("Failed to save reader data: " + e.getMessage());
-        } catch (SQLException e) {
-            e.printStackTrace();
+            if (persistency.isIncremental()) {
+                persistency.saveReaders(changedReaders);
+            } else {
+                synchronized (snapshotLock) {
+                    persistency.saveAllReaders(() -> new ArrayList<>(readers.getReaders()));
+                }
+            }
+        } catch (IOException | SQLException e) {
+            saveFailed = true;
+            throw new SaveFailedException("Failed to save reader data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts collecting changes instead of saving them after every operation.
+     * The collected changes are saved by {@link #saveDeferredChanges()}, each changed book and reader only once,
+     * which turns a long run of operations into a few large saves.
+     * @return true if this call started deferring, false if saves were already being deferred
+     */
+    public synchronized boolean deferSaves() {
+        if (deferredSaves != null) {
+            return false;
+        }
+        deferredSaves = new DeferredSaves();
+        return true;
+    }
+
+    /**
+     * Saves the changes collected since saves were deferred or last saved, and keeps deferring later changes.
+     * @throws SaveFailedException if the changes could not be saved
+     */
+    public void saveDeferredChanges() {
+        DeferredSaves deferred = deferredSaves;
+        if (deferred == null) {
+            return;
+        }
+        List<Book> changedBooks = deferred.takeBooks();
+        List<Reader> changedReaders = deferred.takeReaders();
+        try {
+            if (!changedBooks.isEmpty()) {
+                saveBooksState(changedBooks);
+            }
+        } finally {
+            if (!changedReaders.isEmpty()) {
+                saveReadersState(changedReaders);
+            }
+        }
+    }
+
+    /**
+     * Saves the collected changes and goes back to saving after every operation.
+     * Saving goes back to normal even if the collected changes could not be saved.
+     * @throws SaveFailedException if the collected changes could not be saved
+     */
+    public synchronized void stopDeferringSaves() {
+        try {
+            saveDeferredChanges();
+        } finally {
+            deferredSaves = null;
         }
     }
 
@@ -104,12 +232,12 @@ public class LibraryController {
      */
     private void loadData() throws IOException, ClassNotFoundException {
         try {
-            List<Book> books = loadBooksData();
-            List<Reader> readers = loadReadersData();
+            List<Book> books = catalog.isRestored() ? Collections.emptyList() : loadBooksData();
+            ReaderRegistry readers = persistency.loadReaders();
             addBooksToCatalog(books);
             addReadersToCollection(readers);
         } catch (FileNotFoundException e) {
-            view.displayMessage("Failed to load data.");
+            messages.displayMessage("Failed to load data.");
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -128,25 +256,19 @@ public class LibraryController {
         return books;
     }
     
-    private List<Reader> loadReadersData() throws SQLException, ClassNotFoundException, IOException {
-        List<?> loadedReaders = persistency.loadReaders();
-        List<Reader> readers = new ArrayList<>();
-        for (Object obj : loadedReaders) {
-            if (obj instanceof Reader) {
-                readers.add((Reader) obj);
-            } else {
-                throw new IllegalArgumentException("Loaded object is not an instance of Reader");
-            } 
-        }
-        return readers;
-    }
-    
     private void addBooksToCatalog(List<Book> books) {
         books.forEach(catalog::addBook);
     }
     
-    private void addReadersToCollection(List<Reader> readers) {
-        this.readers.addAll(readers);
+    /**
+     * Registers the loaded readers and points their loans at the catalog entries,
+     * so that a book borrowed by many readers is a single object.
+     */
+    private void addReadersToCollection(ReaderRegistry readers) {
+        for (Reader reader : readers.getReaders()) {
+            reader.resolveLoans(catalog::resolve);
+            this.readers.register(reader);
+        }
     } 
 
     /**
@@ -154,8 +276,12 @@ public class LibraryController {
      * Displays the menu and processes user commands until the exit flag is set to true.
      * @throws FileNotFoundException if the file is not found.
      * @throws IOException if an I/O error occurs.
+     * @throws IllegalStateException if the controller was constructed without an interactive view
      */
     public void runLibraryController() throws FileNotFoundException, IOException {
+        if (view == null) {
+            throw new IllegalStateException("The interactive menu needs an interactive view");
+        }
         while(!exit) {
             try {
                 view.displayMenu();
@@ -195,17 +321,32 @@ public class LibraryController {
      */
     private void registerReader() {
         String readerName = view.promptForReaderName();
-        Optional<Reader> existingReader = readers.stream()
-            .filter(reader -> reader.getName().equalsIgnoreCase(readerName))
-            .findFirst();
-
-        if (existingReader.isPresent()) {
-            view.displayPropertiesMessage("readerAlreadyExists");
+        if (registerReader(readerName)) {
+            view.displayPropertiesMessage("addedReader");
         } else {
+            view.displayPropertiesMessage("readerAlreadyExists");
+        }
+    }
+
+    /**
+     * Registers a new reader with the given name and saves it.
+     * @param readerName the name of the reader
+     * @return true if the reader was registered, false if a reader with that name (ignoring case) already exists
+     * @throws SaveFailedException if the change could not be saved
+     */
+    public boolean registerReader(String readerName) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
             Reader reader = new Reader(readerName);
-            readers.add(reader);
-            saveReadersState(reader);
-            view.displayPropertiesMessage("addedReader");
+            boolean registered = readers.register(reader);
+            if (registered) {
+                saveReadersState(reader);
+            }
+            succeeded = true;
+            return registered;
+        } finally {
+            record(Operation.REGISTER_READER, start, succeeded);
         }
     }
 
@@ -213,9 +354,20 @@ public class LibraryController {
      * Displays the names of all readers in the library.
      */
     private void displayReaders() {
-        view.displayMessage(readers.stream()
-                    .map(Reader::getName)
-                    .collect(Collectors.joining(", ")));
+        displayInPages(pagesOf(getReaders()), Reader::getName);
+    }
+
+    /**
+     * Returns the readers of the library, in registration order.
+     * @return a list of the readers
+     */
+    public List<Reader> getReaders() {
+        long start = System.nanoTime();
+        try {
+            return new ArrayList<>(readers.getReaders());
+        } finally {
+            record(Operation.LIST_READERS, start, true);
+        }
     }
 
     /**
@@ -225,24 +377,43 @@ public class LibraryController {
     private void addBook() {
         String title = view.promptForBookTitle();
         String author = view.promptForBookAuthor();
+        addBook(title, author);
+        view.displayPropertiesMessage("addedBook");
+    }
 
-        Optional<Book> existingBook = catalog.getBooks().stream()
-            .filter(book -> book.getTitle().equalsIgnoreCase(title) && book.getAuthor().equalsIgnoreCase(author))
-            .findFirst();
+    /**
+     * Adds one copy of the book with the given title and author to the catalog and saves it.
+     * If the catalog has no such book yet, it is added with a quantity of 1.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the book that received the copy
+     * @throws SaveFailedException if the change could not be saved
+     */
+    public Book addBook(String title, String author) {
+        return addBook(title, author, 1);
+    }
 
-        Book book = null;
-        if (existingBook.isPresent()) {
-            book = existingBook.get();
-            book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-            book.setTotalQuantity(book.getTotalQuantity() + 1);
+    /**
+     * Adds copies of the book with the given title and author to the catalog and saves it.
+     * If the catalog has no such book yet, it is added with the given quantity.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @param copies the number of copies to add
+     * @return the book that received the copies
+     * @throws IllegalArgumentException if the number of copies is not positive
+     * @throws SaveFailedException if the change could not be saved
+     */
+    public Book addBook(String title, String author, int copies) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Book book = catalog.addCopies(title, author, copies);
             saveBooksState(book);
-        } else {
-            book = new Book(title, author, 1, 1);
-            catalog.addBook(book);
+            succeeded = true;
+            return book;
+        } finally {
+            record(Operation.ADD_BOOK, start, succeeded);
         }
-
-        saveBooksState(book);
-        view.displayPropertiesMessage("addedBook");
     }
 
     /**
@@ -268,34 +439,103 @@ public class LibraryController {
      * Displays all books in the library catalog along with their availability status.
      */
     private void showAllBooks() {
-        view.displayMessage(catalog.getBooks().stream()
-                    .map(book -> book.getTitle() + " (Available: " + book.getAvailableQuantity() + ")")
-                    .collect(Collectors.joining(", ")));
+        displayInPages(this::getBooks, LibraryController::describeAvailability);
     }
 
     /**
      * Displays the titles of all available books in the library catalog.
      */
     private void showAvailableBooks() {
-        view.displayMessage(catalog.getBooks().stream()
-                    .filter(book -> book.getAvailableQuantity() > 0)
-                    .map(book -> book.getTitle() + " (Available: " + book.getAvailableQuantity() + ")")
-                    .collect(Collectors.joining(", ")));
+        displayInPages(this::getAvailableBooks, LibraryController::describeAvailability);
+    }
+
+    private static String describeAvailability(Book book) {
+        return book.getTitle() + " (Available: " + book.getAvailableQuantity() + ")";
+    }
+
+    /**
+     * Returns the books in the catalog.
+     * @return a list of the books in the catalog
+     */
+    public List<Book> getBooks() {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooks();
+        } finally {
+            record(Operation.LIST_BOOKS, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books in the catalog, in catalog order.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooks(int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooks(from, count);
+        } finally {
+            record(Operation.LIST_BOOKS, start, true);
+        }
+    }
+
+    /**
+     * Returns the books that have at least one available copy.
+     * @return a list of the available books
+     */
+    public List<Book> getAvailableBooks() {
+        long start = System.nanoTime();
+        try {
+            return catalog.getAvailableBooks();
+        } finally {
+            record(Operation.LIST_AVAILABLE_BOOKS, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books that have at least one available copy.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getAvailableBooks(int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.getAvailableBooks(from, count);
+        } finally {
+            record(Operation.LIST_AVAILABLE_BOOKS, start, true);
+        }
     }
 
     /**
      * Prompts the user for a reader's name, finds the reader in the list of readers, and displays the titles of the books borrowed by the reader.
-     * @throws IllegalArgumentException if no reader with the given name is found.
+     * @throws NoSuchElementException if no reader with the given name is found.
      */
     private void showReadersBooks() {
         String inputName = view.promptForReaderName();
-        Reader reader = readers.stream()
-                    .filter(r -> r.getName().equalsIgnoreCase(inputName))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("No such reader found."));
-        view.displayMessage(reader.getBorrowedBooks().stream()
-                    .map(Book::getTitle)
-                    .collect(Collectors.joining(", ")));
+        displayInPages(pagesOf(getBorrowedBooks(inputName)), Book::getTitle);
+    }
+
+    /**
+     * Returns the books borrowed by the reader with the given name.
+     * @param readerName the name of the reader
+     * @return a list of the books the reader has borrowed
+     * @throws NoSuchElementException if no reader with the given name is found
+     */
+    public List<Book> getBorrowedBooks(String readerName) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<Book> borrowedBooks = findReader(readerName).getBorrowedBooks();
+            succeeded = true;
+            return borrowedBooks;
+        } finally {
+            record(Operation.LIST_BORROWED_BOOKS, start, succeeded);
+        }
     }
 
     /**
@@ -308,19 +548,71 @@ public class LibraryController {
         String userInput = view.promptForTitleOrAuthor();
 
         if (userInput.equalsIgnoreCase("1")) {
-            view.displayMessage(catalog.getBooks().stream()
-                    .sorted(Comparator.comparing(Book::getTitle))
-                    .map(Book::getTitle)
-                    .collect(Collectors.joining(", ")));
+            displayInPages(this::getBooksSortedByTitle, Book::getTitle);
         } else if (userInput.equalsIgnoreCase("2")) {
-            view.displayMessage(catalog.getBooks().stream()
-                    .sorted(Comparator.comparing(Book::getAuthor))
-                    .map(book -> book.getAuthor() + " - " + book.getTitle())
-                    .collect(Collectors.joining(", ")));
+            displayInPages(this::getBooksSortedByAuthor, LibraryController::describeAuthorAndTitle);
         } else {
             view.displayPropertiesMessage("invalidChoice");
         }
     }
+
+    /**
+     * Returns the books in the catalog sorted by title, using the collation rules of the current language.
+     * @return a list of the books sorted by title
+     */
+    public List<Book> getBooksSortedByTitle() {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooksSortedByTitle();
+        } finally {
+            record(Operation.SORT_BY_TITLE, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books in the catalog sorted by title, using the collation rules of the current language.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooksSortedByTitle(int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooksSortedByTitle(from, count);
+        } finally {
+            record(Operation.SORT_BY_TITLE, start, true);
+        }
+    }
+
+    /**
+     * Returns the books in the catalog sorted by author, using the collation rules of the current language.
+     * @return a list of the books sorted by author
+     */
+    public List<Book> getBooksSortedByAuthor() {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooksSortedByAuthor();
+        } finally {
+            record(Operation.SORT_BY_AUTHOR, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books in the catalog sorted by author, using the collation rules of the current language.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooksSortedByAuthor(int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.getBooksSortedByAuthor(from, count);
+        } finally {
+            record(Operation.SORT_BY_AUTHOR, start, true);
+        }
+    }
     
     /**
      * This method prompts the user for a search query and searches for books in the catalog based on the user's input.
@@ -330,82 +622,253 @@ public class LibraryController {
      */
     private void searchBooks() {
         String userInput = view.promptForTitleOrAuthor();
-        String searchQuery = view.promptForSearchQuery().toLowerCase();
+        String searchQuery = view.promptForSearchQuery();
     
         if (userInput.equalsIgnoreCase("1")) {
-            String titles = filterBooksByTitle(searchQuery);
-            view.displayMessage(titles);
+            displayInPages((from, count) -> searchByTitle(searchQuery, from, count), Book::getTitle);
         } else if (userInput.equalsIgnoreCase("2")) {
-            String authors = filterBooksByAuthor(searchQuery);
-            view.displayMessage(authors);
+            displayInPages((from, count) -> searchByAuthor(searchQuery, from, count),
+                    LibraryController::describeAuthorAndTitle);
         } else {
             view.displayPropertiesMessage("invalidChoice");
         }
     }
-    
-    private String filterBooksByTitle(String searchQuery) {
-        return catalog.getBooks().stream()
-                    .filter(book -> book.getTitle().toLowerCase().contains(searchQuery))
-                    .map(Book::getTitle)
-                    .collect(Collectors.joining(", "));
+
+    private static String describeAuthorAndTitle(Book book) {
+        return book.getAuthor() + " - " + book.getTitle();
     }
-    
-    private String filterBooksByAuthor(String searchQuery) {
-        return catalog.getBooks().stream()
-                    .filter(book -> book.getAuthor().toLowerCase().contains(searchQuery))
-                    .map(book -> book.getAuthor() + " - " + book.getTitle())
-                    .collect(Collectors.joining(", "));
+
+    /**
+     * Returns the books whose title contains the given query, ignoring case.
+     * @param searchQuery the text to search for
+     * @return a list of the matching books
+     */
+    public List<Book> searchByTitle(String searchQuery) {
+        long start = System.nanoTime();
+        try {
+            return catalog.searchByTitle(searchQuery);
+        } finally {
+            record(Operation.SEARCH_BY_TITLE, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books whose title contains the given query, ignoring case.
+     * @param searchQuery the text to search for
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> searchByTitle(String searchQuery, int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.searchByTitle(searchQuery, from, count);
+        } finally {
+            record(Operation.SEARCH_BY_TITLE, start, true);
+        }
+    }
+
+    /**
+     * Returns the books whose author contains the given query, ignoring case.
+     * @param searchQuery the text to search for
+     * @return a list of the matching books
+     */
+    public List<Book> searchByAuthor(String searchQuery) {
+        long start = System.nanoTime();
+        try {
+            return catalog.searchByAuthor(searchQuery);
+        } finally {
+            record(Operation.SEARCH_BY_AUTHOR, start, true);
+        }
+    }
+
+    /**
+     * Returns a page of the books whose author contains the given query, ignoring case.
+     * @param searchQuery the text to search for
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> searchByAuthor(String searchQuery, int from, int count) {
+        long start = System.nanoTime();
+        try {
+            return catalog.searchByAuthor(searchQuery, from, count);
+        } finally {
+            record(Operation.SEARCH_BY_AUTHOR, start, true);
+        }
     }
 
     private void markBookAsBorrowed() {
         Reader reader = getReaderByName();
-        List<Book> availableBooks = catalog.getBooks().stream()
-                    .filter(Book::isAvailable)
-                    .collect(Collectors.toList());
-        displayBookList(availableBooks);
-        int bookIndex = validateAndGetIndex(availableBooks);
-        Book book = availableBooks.get(bookIndex);
-        reader.borrowBook(book);
-        saveLibraryState(book, reader);
+        int count = catalog.countAvailableBooks();
+        displayBookList(this::getAvailableBooks);
+        if (count == 0) {
+            return;
+        }
+        int bookIndex = validateAndGetIndex(count);
+        Book book = catalog.getAvailableBook(bookIndex)
+                .orElseThrow(() -> new NoSuchElementException("No such book found."));
+        borrowBook(reader, book);
         view.displayPropertiesMessage("borrowedBook");
     }
+
+    /**
+     * Lends one copy of the book with the given title and author to the reader with the given name and saves the change.
+     * @param readerName the name of the reader
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the borrowed book
+     * @throws NoSuchElementException if there is no such reader or no such book
+     * @throws IllegalStateException if no copy of the book is available
+     * @throws SaveFailedException if the change could not be saved
+     */
+    public Book borrowBook(String readerName, String title, String author) {
+        Reader reader = findReader(readerName);
+        Book book = catalog.findBook(title, author)
+                .orElseThrow(() -> new NoSuchElementException("No such book found."));
+        borrowBook(reader, book);
+        return book;
+    }
+
+    private void borrowBook(Reader reader, Book book) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            reader.borrowBook(book);
+            saveLibraryState(book, reader);
+            succeeded = true;
+        } finally {
+            record(Operation.BORROW_BOOK, start, succeeded);
+        }
+    }
     
     private void markBookAsReturned() {
         Reader reader = getReaderByName();
         List<Book> borrowedBooks = reader.getBorrowedBooks();
-        displayBookList(borrowedBooks);
-        int bookIndex = validateAndGetIndex(borrowedBooks);
-        Book book = borrowedBooks.get(bookIndex);
-        reader.returnBook(book);
-        saveLibraryState(book, reader);
+        displayBookList(pagesOf(borrowedBooks));
+        if (borrowedBooks.isEmpty()) {
+            return;
+        }
+        int bookIndex = validateAndGetIndex(borrowedBooks.size());
+        returnBook(reader, borrowedBooks.get(bookIndex));
         view.displayPropertiesMessage("returnedBook");
     }
 
+    /**
+     * Takes back one copy of the book with the given title and author from the reader with the given name and saves the change.
+     * @param readerName the name of the reader
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the returned book
+     * @throws NoSuchElementException if there is no such reader or the reader has not borrowed such a book
+     * @throws SaveFailedException if the change could not be saved
+     */
+    public Book returnBook(String readerName, String title, String author) {
+        Reader reader = findReader(readerName);
+        Book book = catalog.findBook(title, author)
+                .filter(entry -> reader.getLoanCount(entry) > 0)
+                .or(() -> reader.findBorrowedBook(title, author))
+                .orElseThrow(() -> new NoSuchElementException("The reader has not borrowed such a book."));
+        returnBook(reader, book);
+        return book;
+    }
+
+    private void returnBook(Reader reader, Book book) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            reader.returnBook(book);
+            saveLibraryState(book, reader);
+            succeeded = true;
+        } finally {
+            record(Operation.RETURN_BOOK, start, succeeded);
+        }
+    }
+
     private Reader getReaderByName() {
-        String inputName = view.promptForReaderName();
-        return readers.stream()
-                .filter(r -> r.getName().equalsIgnoreCase(inputName))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("No such reader found."));
+        return findReader(view.promptForReaderName());
     }
 
-    private void displayBookList(List<Book> bookList) {
-        for (int i = 0; i < bookList.size(); i++) {
-            view.displayMessage((i + 1) + ". " + bookList.get(i).getTitle());
+    private Reader findReader(String readerName) {
+        return readers.findReader(readerName)
+                .orElseThrow(() -> new NoSuchElementException("No such reader found."));
+    }
+
+    private void displayBookList(Pages<Book> books) {
+        displayInPages((from, count) -> {
+            List<Book> page = books.fetch(from, count);
+            List<String> rows = new ArrayList<>(page.size());
+            for (int i = 0; i < page.size(); i++) {
+                rows.add((from + i + 1) + ". " + page.get(i).getTitle());
+            }
+            return rows;
+        }, row -> row);
+    }
+
+    /**
+     * Displays a listing page by page, in pages of the view's page size.
+     * Each page is fetched only when it is shown, with one extra item to tell whether another page follows,
+     * and the listing stops as soon as the user declines the next page. The first page of a listing therefore
+     * costs the same however long the listing is, and the items that are never shown are never fetched.
+     * @param pages the source of the pages of the listing
+     * @param row the function that formats the row of an item
+     */
+    private <T> void displayInPages(Pages<T> pages, Function<? super T, String> row) {
+        int pageSize = view.getPageSize();
+        int fetchSize = pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1;
+        List<String> page = new ArrayList<>();
+        for (int from = 0; ; from += pageSize) {
+            List<T> items = pages.fetch(from, fetchSize);
+            if (items.isEmpty()) {
+                if (from == 0) {
+                    view.displayPropertiesMessage("noResults");
+                }
+                return;
+            }
+            boolean more = items.size() > pageSize;
+            page.clear();
+            for (T item : more ? items.subList(0, pageSize) : items) {
+                page.add(row.apply(item));
+            }
+            view.displayPage(page);
+            if (!more || !view.promptForNextPage()) {
+                return;
+            }
         }
     }
 
-    private int validateAndGetIndex(List<Book> bookList) {
+    private static <T> Pages<T> pagesOf(List<T> list) {
+        return (from, count) -> list.subList(Math.min(from, list.size()), (int) Math.min(list.size(), (long) from + count));
+    }
+
+    /**
+     * A listing that is read one page at a time.
+     * @param <T> the type of the listed items
+     */
+    @FunctionalInterface
+    private interface Pages<T> {
+        /**
+         * Returns a page of the listing.
+         * @param from the position of the first item of the page
+         * @param count the maximum number of items in the page
+         * @return the items of the page, fewer than the count only at the end of the listing
+         */
+        List<T> fetch(int from, int count);
+    }
+
+    private int validateAndGetIndex(int count) {
         int bookIndex = -1;
-        while (bookIndex < 1 || bookIndex > bookList.size()) {
+        while (bookIndex < 1 || bookIndex > count) {
             String input = view.promptForBookIndex();
             try {
                 bookIndex = Integer.parseInt(input);
             } catch (NumberFormatException e) {
                 view.displayMessage("Invalid input. Please enter a number.");
             }
-            if (bookIndex < 1 || bookIndex > bookList.size()) {
-                view.displayMessage("Invalid index. Please enter a number between 1 and " + bookList.size() + ".");
+            if (bookIndex < 1 || bookIndex > count) {
+                view.displayMessage("Invalid index. Please enter a number between 1 and " + count + ".");
             }
         }
         return bookIndex - 1;
@@ -437,9 +900,73 @@ public class LibraryController {
         }
 
         view.setLocaleFromProperties();
+        catalog.changeCollationLocale(localeOf(newLanguage));
         view.displayPropertiesMessage("languageChanged");
     }
 
+    /**
+     * Writes the pending saves and closes the persistency, then releases the catalog, recording the fingerprint of
+     * the saved data. If a save failed during the run, or the pending saves cannot be written, the catalog is not
+     * marked as closed cleanly, so a catalog in memory-mapped files is loaded again on the next start.
+     * @throws SQLException if the persistency fails to save or to close
+     * @throws IOException if the pending saves or the catalog cannot be written back
+     */
+    public void close() throws SQLException, IOException {
+        String fingerprint = null;
+        try {
+            persistency.flush();
+            if (!saveFailed) {
+                fingerprint = persistency.getFingerprint();
+            }
+        } finally {
+            persistency.close();
+        }
+        catalog.close(fingerprint);
+    }
+
+    /**
+     * Creates the catalog for the language and the storage settings of the configuration file.
+     * @return the catalog
+     * @throws IOException if the files of an off-heap catalog cannot be opened
+     */
+    private Catalog createCatalog() throws IOException {
+        Properties properties = readProperties();
+        Locale locale = localeOf(properties.getProperty("language", "en"));
+        if (!"offheap".equals(properties.getProperty("catalog.store", "heap"))) {
+            return new Catalog(locale);
+        }
+        String directory = properties.getProperty("catalog.storeDirectory");
+        if (directory == null) {
+            return Catalog.openStore(locale, null, null);
+        }
+        String fingerprint;
+        try {
+            fingerprint = persistency.getFingerprint();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            fingerprint = null;
+        }
+        return Catalog.openStore(locale, Paths.get(directory), fingerprint);
+    }
+
+    /**
+     * Reads the configuration file.
+     * @return the configured properties, or no properties if the file cannot be read
+     */
+    private Properties readProperties() {
+        Properties properties = new Properties();
+        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(CONFIG_FILENAME))) {
+            properties.load(reader);
+        } catch (IOException ex) {
+            return new Properties();
+        }
+        return properties;
+    }
+
+    private static Locale localeOf(String language) {
+        return "bg".equals(language) ? Locale.forLanguageTag("bg") : Locale.ENGLISH;
+    }
+
     /**
      * Updates the language property in the configuration file with the given new language.
      * 
@@ -456,9 +983,67 @@ public class LibraryController {
     }
 
     /**
-     * Sets the exit flag to true, indicating that the program should exit.
+     * Waits for all pending saves to be written and sets the exit flag to true, indicating that the program should exit.
      */
     private void exit() {
+        try {
+            persistency.flush();
+        } catch (IOException | SQLException e) {
+            saveFailed = true;
+            messages.displayMessage("Failed to save data: " + e.getMessage());
+        }
         exit = true;
     }
+
+    /**
+     * The operations whose latency is recorded, with the names they are published under.
+     */
+    private enum Operation {
+        REGISTER_READER("registerReader"),
+        LIST_READERS("getReaders"),
+        ADD_BOOK("addBook"),
+        LIST_BOOKS("getBooks"),
+        LIST_AVAILABLE_BOOKS("getAvailableBooks"),
+        LIST_BORROWED_BOOKS("getBorrowedBooks"),
+        SORT_BY_TITLE("getBooksSortedByTitle"),
+        SORT_BY_AUTHOR("getBooksSortedByAuthor"),
+        SEARCH_BY_TITLE("searchByTitle"),
+        SEARCH_BY_AUTHOR("searchByAuthor"),
+        BORROW_BOOK("borrowBook"),
+        RETURN_BOOK("returnBook");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    /**
+     * The books and readers changed while saves are deferred, in the order in which they first changed.
+     */
+    private static final class DeferredSaves {
+        private final Set<Book> books = new LinkedHashSet<>();
+        private final Set<Reader> readers = new LinkedHashSet<>();
+
+        synchronized void addBook(Book book) {
+            books.add(book);
+        }
+
+        synchronized void addReader(Reader reader) {
+            readers.add(reader);
+        }
+
+        synchronized List<Book> takeBooks() {
+            List<Book> taken = new ArrayList<>(books);
+            books.clear();
+            return taken;
+        }
+
+        synchronized List<Reader> takeReaders() {
+            List<Reader> taken = new ArrayList<>(readers);
+            readers.clear();
+            return taken;
+        }
+    }
 }
\ No newline at end of file
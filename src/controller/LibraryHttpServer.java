@@ -0,0 +1,302 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.Book;
+import model.Reader;
+
+/**
+ * Serves the operations of a {@link LibraryController} as a JSON API over HTTP, using the HTTP server built into the JDK.
+ * Every request runs on its own virtual thread, so many desks and kiosks can use one instance at the same time.
+ * <p>
+ * Parameters are read from the query string and from a form-encoded request body. The endpoints are:
+ * <ul>
+ * <li>{@code GET /readers} lists the readers; {@code POST /readers} with {@code name} registers one.</li>
+ * <li>{@code GET /books} lists the catalog. It accepts {@code available=true}, {@code sort=title|author},
+ * or a {@code title} or {@code author} search query. {@code POST /books} with {@code title} and {@code author}
+ * adds a copy.</li>
+ * <li>{@code GET /loans} with {@code reader} lists the books borrowed by a reader. {@code POST /loans} with
+ * {@code reader}, {@code title} and {@code author} borrows a book; {@code DELETE /loans} with the same
+ * parameters returns it.</li>
+ * </ul>
+ * Errors are answered with {@code {"error": "..."}} and status 400 for invalid input, 404 for unknown readers
+ * or books, 405 for unsupported methods, 409 when a reader already exists or no copy is available,
+ * and 500 when a change was made but could not be saved.
+ */
+public class LibraryHttpServer {
+    private static final int STOP_DELAY_SECONDS = 2;
+
+    private final LibraryController controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Creates a server for the given controller. The server does not accept requests until it is started.
+     * @param controller the controller whose operations are served
+     * @param port the port to listen on, or 0 to pick a free port
+     * @param backlog the maximum number of queued incoming connections, or 0 for the system default
+     * @throws IOException if the server socket cannot be bound
+     */
+    public LibraryHttpServer(LibraryController controller, int port, int backlog) throws IOException {
+        this.controller = controller;
+        this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/readers", exchange -> handle(exchange, this::readers));
+        server.createContext("/books", exchange -> handle(exchange, this::books));
+        server.createContext("/loans", exchange -> handle(exchange, this::loans));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return the port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, gives the requests in progress a short time to finish, and releases the threads.
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.close();
+        stopped.countDown();
+    }
+
+    /**
+     * Blocks until {@link #stop()} has been called.
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    private Response readers(String method, Map<String, String> parameters) {
+        switch (method) {
+            case "GET":
+                return Response.ok(array(controller.getReaders(), LibraryHttpServer::toJson));
+            case "POST":
+                String name = required(parameters, "name");
+                if (!controller.registerReader(name)) {
+                    return Response.error(409, "Reader already exists.");
+                }
+                return new Response(201, "{\"name\":" + quote(name) + "}");
+            default:
+                return Response.methodNotAllowed("GET, POST");
+        }
+    }
+
+    private Response books(String method, Map<String, String> parameters) {
+        switch (method) {
+            case "GET":
+                return Response.ok(array(findBooks(parameters), LibraryHttpServer::toJson));
+            case "POST":
+                Book book = controller.addBook(required(parameters, "title"), required(parameters, "author"));
+                return new Response(201, toJson(book));
+            default:
+                return Response.methodNotAllowed("GET, POST");
+        }
+    }
+
+    private List<Book> findBooks(Map<String, String> parameters) {
+        if (parameters.containsKey("title")) {
+            return controller.searchByTitle(parameters.get("title"));
+        }
+        if (parameters.containsKey("author")) {
+            return controller.searchByAuthor(parameters.get("author"));
+        }
+        if (Boolean.parseBoolean(parameters.get("available"))) {
+            return controller.getAvailableBooks();
+        }
+        String sort = parameters.get("sort");
+        if (sort == null) {
+            return controller.getBooks();
+        } else if (sort.equals("title")) {
+            return controller.getBooksSortedByTitle();
+        } else if (sort.equals("author")) {
+            return controller.getBooksSortedByAuthor();
+        }
+        throw new IllegalArgumentException("Invalid sort order: " + sort);
+    }
+
+    private Response loans(String method, Map<String, String> parameters) {
+        switch (method) {
+            case "GET":
+                return Response.ok(array(controller.getBorrowedBooks(required(parameters, "reader")), LibraryHttpServer::toJson));
+            case "POST":
+                return Response.ok(toJson(controller.borrowBook(required(parameters, "reader"),
+                        required(parameters, "title"), required(parameters, "author"))));
+            case "DELETE":
+                return Response.ok(toJson(controller.returnBook(required(parameters, "reader"),
+                        required(parameters, "title"), required(parameters, "author"))));
+            default:
+                return Response.methodNotAllowed("GET, POST, DELETE");
+        }
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                response = Response.error(404, "Not found.");
+            } else {
+                response = route.handle(exchange.getRequestMethod(), readParameters(exchange));
+            }
+        } catch (SaveFailedException e) {
+            e.printStackTrace();
+            response = Response.error(500, e.getMessage());
+        } catch (NoSuchElementException e) {
+            response = Response.error(404, e.getMessage());
+        } catch (IllegalStateException e) {
+            response = Response.error(409, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = Response.error(500, "Internal error.");
+        }
+
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (response.allow != null) {
+            exchange.getResponseHeaders().set("Allow", response.allow);
+        }
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+            }
+        }
+        return parameters;
+    }
+
+    private static void parseForm(String form, Map<String, String> parameters) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static String toJson(Book book) {
+        return "{\"title\":" + quote(book.getTitle())
+                + ",\"author\":" + quote(book.getAuthor())
+                + ",\"availableQuantity\":" + book.getAvailableQuantity()
+                + ",\"totalQuantity\":" + book.getTotalQuantity() + "}";
+    }
+
+    private static String toJson(Reader reader) {
+        return "{\"name\":" + quote(reader.getName())
+                + ",\"borrowedBooks\":" + reader.getLoanCount() + "}";
+    }
+
+    private static <T> String array(List<T> items, Function<T, String> toJson) {
+        return items.stream().map(toJson).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String quote(String text) {
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Handles the requests for one endpoint.
+     */
+    private interface Route {
+        Response handle(String method, Map<String, String> parameters);
+    }
+
+    /**
+     * The status code and JSON body of a response, and the allowed methods of a 405 response.
+     */
+    private static final class Response {
+        private final int status;
+        private final String body;
+        private final String allow;
+
+        Response(int status, String body) {
+            this(status, body, null);
+        }
+
+        private Response(int status, String body, String allow) {
+            this.status = status;
+            this.body = body;
+            this.allow = allow;
+        }
+
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, "{\"error\":" + quote(message == null ? "" : message) + "}");
+        }
+
+        static Response methodNotAllowed(String allow) {
+            return new Response(405, error(405, "Method not allowed.").body, allow);
+        }
+    }
+}
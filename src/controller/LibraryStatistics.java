@@ -0,0 +1,32 @@
+package controller;
+
+import model.Catalog;
+import model.ReaderRegistry;
+
+/**
+ * Reports the current size of the catalog and the reader list.
+ */
+public class LibraryStatistics implements LibraryStatisticsMBean {
+    private final Catalog catalog;
+    private final ReaderRegistry readers;
+
+    LibraryStatistics(Catalog catalog, ReaderRegistry readers) {
+        this.catalog = catalog;
+        this.readers = readers;
+    }
+
+    @Override
+    public int getBookCount() {
+        return catalog.size();
+    }
+
+    @Override
+    public int getAvailableBookCount() {
+        return catalog.countAvailableBooks();
+    }
+
+    @Override
+    public int getReaderCount() {
+        return readers.size();
+    }
+}
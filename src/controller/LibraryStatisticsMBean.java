@@ -0,0 +1,25 @@
+package controller;
+
+/**
+ * The management interface of {@link LibraryStatistics}, as published over JMX.
+ */
+public interface LibraryStatisticsMBean {
+
+    /**
+     * Returns the number of books in the catalog.
+     * @return the number of books
+     */
+    int getBookCount();
+
+    /**
+     * Returns the number of books that have at least one available copy.
+     * @return the number of available books
+     */
+    int getAvailableBookCount();
+
+    /**
+     * Returns the number of registered readers.
+     * @return the number of readers
+     */
+    int getReaderCount();
+}
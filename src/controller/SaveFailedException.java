@@ -0,0 +1,18 @@
+package controller;
+
+/**
+ * Thrown when a change was made to the library but could not be saved to the persistency.
+ * The change stays in memory; it is lost on restart unless a later save succeeds.
+ */
+public class SaveFailedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new exception.
+     * @param message the description of the failed save
+     * @param cause the error raised by the persistency
+     */
+    public SaveFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
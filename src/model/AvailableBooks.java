@@ -0,0 +1,97 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The books of a catalog that have at least one available copy, kept in a dense array.
+ * Each book's position in the array is remembered by its identifier, so adding and removing a book take constant time,
+ * counting them takes constant time, and enumerating them or reading a range costs only the books visited.
+ * A removed book's place is taken by the last book, so the books are in no particular order.
+ * The class is not synchronized; the catalog guards it.
+ */
+final class AvailableBooks {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Book[] books = new Book[INITIAL_CAPACITY];
+    private int[] positionsById = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Adds a book, unless it is already present.
+     * @param book the book, which must have an identifier
+     */
+    void add(Book book) {
+        int id = book.getId();
+        if (id < positionsById.length && positionsById[id] != 0) {
+            return;
+        }
+        if (id >= positionsById.length) {
+            positionsById = Arrays.copyOf(positionsById, Math.max(id + 1, positionsById.length * 2));
+        }
+        if (size == books.length) {
+            books = Arrays.copyOf(books, size * 2);
+        }
+        books[size] = book;
+        // Positions are stored plus one, so the zero of a new array means absent.
+        positionsById[id] = ++size;
+    }
+
+    /**
+     * Removes a book, if it is present.
+     * @param book the book to remove
+     */
+    void remove(Book book) {
+        int id = book.getId();
+        if (id < 0 || id >= positionsById.length || positionsById[id] == 0) {
+            return;
+        }
+        int position = positionsById[id] - 1;
+        Book last = books[--size];
+        books[position] = last;
+        positionsById[last.getId()] = position + 1;
+        books[size] = null;
+        positionsById[id] = 0;
+    }
+
+    /**
+     * Returns the number of books.
+     * @return the number of books
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the book at the given position.
+     * @param position the position of the book
+     * @return the book, or null if there is no book at that position
+     */
+    Book get(int position) {
+        return position >= 0 && position < size ? books[position] : null;
+    }
+
+    /**
+     * Calls the given action for each book.
+     * @param action the action to call
+     */
+    void forEach(Consumer<? super Book> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(books[i]);
+        }
+    }
+
+    /**
+     * Returns the books in a range of positions.
+     * @param from the position of the first book of the range
+     * @param count the maximum number of books in the range
+     * @return the books of the range
+     */
+    List<Book> range(int from, int count) {
+        int start = Math.min(from, size);
+        int end = (int) Math.min(size, (long) start + count);
+        return new ArrayList<>(Arrays.asList(books).subList(start, end));
+    }
+}
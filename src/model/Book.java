@@ -1,16 +1,34 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * The Book class represents a book in the library, with a title, author, available quantity, and total quantity.
+ * Copies are borrowed and returned with atomic compare-and-set updates, so concurrent borrowers never take more
+ * copies than are available and returns never push the available quantity above the total.
+ * <p>
+ * A book that is not in a catalog keeps its title, author and quantities in its own fields. Once it is added to a
+ * catalog it becomes a view of its row in the catalog's {@link BookColumns}: the fields are cleared and every getter
+ * and update goes to the columns, until the book is removed again. A book must not be used by other threads while
+ * it is being added to or removed from a catalog.
  */
 public class Book implements Serializable {
-    
+    private static final long serialVersionUID = -32459818516295316L;
+    private static final AtomicIntegerFieldUpdater<Book> AVAILABLE =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "availableQuantity");
+    private static final AtomicIntegerFieldUpdater<Book> TOTAL =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "totalQuantity");
+
     private String title;
     private String author;
-    private int availableQuantity;
-    private int totalQuantity;
+    private volatile int availableQuantity;
+    private volatile int totalQuantity;
+    private transient volatile Catalog catalog;
+    private transient int id = -1;
 
     /**
      * Creates a new Book object with the given title, author, available quantity, and total quantity.
@@ -26,12 +44,23 @@ public class Book implements Serializable {
         this.totalQuantity = totalQuantity;
     }
 
+    /**
+     * Creates a book that is a view of a row restored into the given catalog's columns.
+     * @param catalog the catalog holding the row
+     * @param row the row, which becomes the book's identifier
+     */
+    Book(Catalog catalog, int row) {
+        this.id = row;
+        this.catalog = catalog;
+    }
+
     /**
      * Returns the title of the book.
      * @return the title of the book
      */
     public String getTitle() {
-        return this.title;
+        Catalog owner = catalog;
+        return owner != null ? owner.columns.title(id) : this.title;
     }
 
     /**
@@ -39,7 +68,8 @@ public class Book implements Serializable {
      * @return the author of the book
      */
     public String getAuthor() {
-        return this.author;
+        Catalog owner = catalog;
+        return owner != null ? owner.columns.author(id) : this.author;
     }
 
     /**
@@ -47,7 +77,7 @@ public class Book implements Serializable {
      * @return the number of available copies of the book
      */
     public int getAvailableQuantity() {
-        return this.availableQuantity;
+        return getAvailableQuantity(catalog);
     }
 
     /**
@@ -55,15 +85,20 @@ public class Book implements Serializable {
      * @return the total number of copies of the book
      */
     public int getTotalQuantity() {
-        return this.totalQuantity;
+        return getTotalQuantity(catalog);
     }
 
     /**
      * Sets the number of available copies of the book.
+     * If the book becomes available or unavailable, the catalog it belongs to is notified.
      * @param quantity the new number of available copies of the book
      */
     public void setAvailableQuantity(int quantity) {
-        this.availableQuantity = quantity;
+        Catalog owner = catalog;
+        int previous = owner != null ? owner.columns.getAndSetAvailable(id, quantity) : AVAILABLE.getAndSet(this, quantity);
+        if (previous > 0 != quantity > 0) {
+            notifyAvailabilityChanged(owner);
+        }
     }
 
     /**
@@ -71,7 +106,100 @@ public class Book implements Serializable {
      * @param quantity the new total number of copies of the book
      */
     public void setTotalQuantity(int quantity) {
-        this.totalQuantity = quantity;
+        Catalog owner = catalog;
+        if (owner != null) {
+            owner.columns.setTotal(id, quantity);
+        } else {
+            this.totalQuantity = quantity;
+        }
+    }
+
+    /**
+     * Takes one copy of the book if one is available.
+     * @return true if a copy was taken, false if no copy was available
+     */
+    public boolean borrowCopy() {
+        Catalog owner = catalog;
+        int available;
+        do {
+            available = getAvailableQuantity(owner);
+            if (available <= 0) {
+                return false;
+            }
+        } while (!compareAndSetAvailable(owner, available, available - 1));
+        if (available == 1) {
+            notifyAvailabilityChanged(owner);
+        }
+        return true;
+    }
+
+    /**
+     * Gives back one copy of the book, unless all copies are already available.
+     * @return true if the copy was given back, false if the available quantity already equals the total quantity
+     */
+    public boolean returnCopy() {
+        Catalog owner = catalog;
+        int available;
+        do {
+            available = getAvailableQuantity(owner);
+            if (available >= getTotalQuantity(owner)) {
+                return false;
+            }
+        } while (!compareAndSetAvailable(owner, available, available + 1));
+        if (available == 0) {
+            notifyAvailabilityChanged(owner);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a new copy of the book, increasing both the total and the available quantity.
+     */
+    public void addCopy() {
+        addCopies(1);
+    }
+
+    /**
+     * Adds new copies of the book, increasing both the total and the available quantity.
+     * @param copies the number of copies to add
+     * @throws IllegalArgumentException if the number of copies is not positive
+     */
+    public void addCopies(int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Number of copies must be positive: " + copies);
+        }
+        Catalog owner = catalog;
+        int previous;
+        if (owner != null) {
+            owner.columns.addTotal(id, copies);
+            previous = owner.columns.getAndAddAvailable(id, copies);
+        } else {
+            TOTAL.addAndGet(this, copies);
+            previous = AVAILABLE.getAndAdd(this, copies);
+        }
+        if (previous == 0) {
+            notifyAvailabilityChanged(owner);
+        }
+    }
+
+    private int getAvailableQuantity(Catalog owner) {
+        return owner != null ? owner.columns.available(id) : availableQuantity;
+    }
+
+    private int getTotalQuantity(Catalog owner) {
+        return owner != null ? owner.columns.total(id) : totalQuantity;
+    }
+
+    private boolean compareAndSetAvailable(Catalog owner, int expected, int value) {
+        return owner != null
+                ? owner.columns.compareAndSetAvailable(id, expected, value)
+                : AVAILABLE.compareAndSet(this, expected, value);
+    }
+
+    private void notifyAvailabilityChanged(Catalog owner) {
+        if (owner != null) {
+            owner.availabilityChanged(this);
+        }
     }
 
     /**
@@ -79,6 +207,66 @@ public class Book implements Serializable {
      * @return true if the book is available, false otherwise
      */
     public boolean isAvailable() {
-        return this.availableQuantity > 0;
+        return getAvailableQuantity() > 0;
+    }
+
+    /**
+     * Returns the catalog whose columns hold the book's data.
+     * @return the catalog, or null if the book is not in a catalog
+     */
+    Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Makes the book a view of the given row of a catalog's columns and releases its own fields.
+     * @param catalog the catalog the book was added to
+     * @param row the row holding the book, which becomes its identifier
+     */
+    void attach(Catalog catalog, int row) {
+        this.id = row;
+        this.catalog = catalog;
+        this.title = null;
+        this.author = null;
+    }
+
+    /**
+     * Copies the book's row back into its own fields and detaches it from its catalog.
+     * The book keeps its identifier.
+     */
+    void detach() {
+        Catalog owner = catalog;
+        if (owner == null) {
+            return;
+        }
+        this.title = owner.columns.title(id);
+        this.author = owner.columns.author(id);
+        this.totalQuantity = owner.columns.total(id);
+        this.availableQuantity = owner.columns.available(id);
+        this.catalog = null;
+    }
+
+    /**
+     * Returns the identifier the catalog assigned to this book.
+     * Identifiers are never reused within a catalog, so they can stand in for the book in other structures.
+     * @return the identifier, or -1 if the book has never been added to a catalog
+     */
+    public int getId() {
+        return id;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Catalog owner = catalog;
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", getTitle());
+        fields.put("author", getAuthor());
+        fields.put("availableQuantity", getAvailableQuantity(owner));
+        fields.put("totalQuantity", getTotalQuantity(owner));
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        id = -1;
     }
 }
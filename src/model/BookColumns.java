@@ -0,0 +1,72 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * Stores the books of a catalog column by column: one int column each for the available quantity, the total
+ * quantity, the title and the author, with titles and authors stored as codes of a string dictionary.
+ * A book's row is its identifier.
+ * <p>
+ * Quantities are read and updated atomically from any thread. Rows are appended by the catalog under its write
+ * lock and are never reused. A title or author can be read on any thread that obtained the row through a
+ * happens-before edge from the thread that added it.
+ */
+interface BookColumns {
+    /**
+     * Appends a row.
+     * @return the row of the book
+     */
+    int add(String title, String author, int availableQuantity, int totalQuantity);
+
+    String title(int row);
+
+    String author(int row);
+
+    int available(int row);
+
+    int total(int row);
+
+    boolean compareAndSetAvailable(int row, int expected, int value);
+
+    int getAndSetAvailable(int row, int value);
+
+    int getAndAddAvailable(int row, int delta);
+
+    void setTotal(int row, int value);
+
+    int addTotal(int row, int delta);
+
+    /**
+     * Returns the number of rows, including removed ones.
+     * @return the number of rows
+     */
+    int rows();
+
+    /**
+     * Returns true if the book of the given row was removed from the catalog.
+     * @param row the row to check
+     * @return true if the row was removed, false otherwise
+     */
+    boolean isRemoved(int row);
+
+    /**
+     * Marks a row as removed, so it is skipped when the columns are attached again after a restart.
+     * @param row the row of the removed book
+     */
+    void remove(int row);
+
+    /**
+     * Returns true if the columns were attached to rows kept from an earlier run.
+     * @return true if the rows were restored, false if the columns started empty
+     */
+    boolean isRestored();
+
+    /**
+     * Releases the columns. Columns that outlive the process are marked as cleanly closed with the given
+     * fingerprint, so the next run that expects the same fingerprint can attach to them. The columns must not
+     * be used afterwards.
+     * @param fingerprint the fingerprint of the data the columns mirror, or null to leave them marked unclean
+     * @throws IOException if the columns cannot be written back
+     */
+    void close(String fingerprint) throws IOException;
+}
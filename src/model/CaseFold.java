@@ -0,0 +1,28 @@
+package model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Case-folds text for case-insensitive lookups of titles, authors and reader names.
+ * The text is normalized to NFC first, so that a Cyrillic letter typed as a base letter plus a combining mark
+ * (for example the Bulgarian short i written as i followed by a combining breve) matches its precomposed form,
+ * and is then folded with the Bulgarian locale.
+ */
+final class CaseFold {
+    static final Locale BULGARIAN = Locale.forLanguageTag("bg");
+
+    private CaseFold() {}
+
+    /**
+     * Returns the case-folded form of the given text.
+     * @param text the text to fold
+     * @return the folded text
+     */
+    static String fold(String text) {
+        String normalized = Normalizer.isNormalized(text, Normalizer.Form.NFC)
+                ? text
+                : Normalizer.normalize(text, Normalizer.Form.NFC);
+        return normalized.toUpperCase(BULGARIAN).toLowerCase(BULGARIAN);
+    }
+}
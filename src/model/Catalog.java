@@ -1,35 +1,597 @@
 package model;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * The Catalog class represents a collection of books in the library.
+ * Next to the list of books it keeps a hash index keyed by the case-folded title and author,
+ * so that exact-match lookups do not have to scan the whole catalog,
+ * trigram indexes over the titles and authors for substring searches,
+ * collation-ordered indexes over the titles and authors for sorted listings,
+ * and the set of available books, updated whenever a book's availability changes.
+ * <p>
+ * The titles, authors and quantities of the books are held in {@link BookColumns}, with titles and authors
+ * dictionary-encoded, and the {@link Book} objects in the catalog are small views of their rows. A large catalog
+ * is therefore a few int arrays and one string per distinct title or author, rather than several objects per book.
+ * The columns can also be kept off the heap, optionally in memory-mapped files that a later run attaches to;
+ * see {@link #openStore(Locale, Path, String)}. Such a catalog must be closed with {@link #close(String)}.
+ * <p>
+ * The catalog is safe for concurrent use. Exact-match lookups do not lock, searches and listings share a read lock,
+ * and adding or removing books takes the write lock. Listings and searches can also be read one page at a time;
+ * each page is taken under the read lock on its own, so showing the first page of a large catalog only costs
+ * that page, and changes made between two pages show up in the later one. Borrowing and returning copies only touches the book itself,
+ * plus the set of available books when a book runs out or becomes available again.
  */
-public class Catalog implements Serializable {
+public class Catalog {
+    private static final Executor COLLATION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-collation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    final BookColumns columns;
     private List<Book> books;
+    private List<Book> booksById;
+    private Map<String, Book> booksByKey;
+    private TrigramIndex titleIndex;
+    private TrigramIndex authorIndex;
+    private SortedIndex titleOrder;
+    private SortedIndex authorOrder;
+    private List<Consumer<Catalog>> pendingOrderChanges;
+    private final AvailableBooks availableBooks;
 
     /**
-     * Constructs an empty catalog.
+     * Constructs an empty catalog, sorted by the collation rules of English.
      */
     public Catalog() {
+        this(Locale.ENGLISH);
+    }
+
+    /**
+     * Constructs an empty catalog, sorted by the collation rules of the given locale.
+     * @param locale the locale whose collation rules define the sorted listings
+     */
+    public Catalog(Locale locale) {
+        this(locale, new HeapBookColumns());
+    }
+
+    /**
+     * Opens a catalog that keeps the titles, authors and quantities of its books outside the Java heap.
+     * With a directory, they are kept in memory-mapped files there, which only one process can open at a time.
+     * If the files were left by a catalog that was closed cleanly with the same fingerprint, their books are
+     * attached again and {@link #isRestored()} returns true; otherwise the files are cleared and the catalog
+     * starts empty. Without a directory, the data is kept in direct memory.
+     * @param locale the locale whose collation rules define the sorted listings
+     * @param storeDirectory the directory of the memory-mapped files, or null to use direct memory
+     * @param fingerprint the fingerprint of the data the catalog mirrors, as passed to {@link #close(String)}
+     *        by the run that stored it, or null to never attach to stored books
+     * @return the catalog
+     * @throws IOException if the files cannot be opened or mapped, or are in use by another process
+     */
+    public static Catalog openStore(Locale locale, Path storeDirectory, String fingerprint) throws IOException {
+        Catalog catalog = new Catalog(locale, new OffHeapBookColumns(storeDirectory, fingerprint));
+        catalog.restoreRows();
+        return catalog;
+    }
+
+    private Catalog(Locale locale, BookColumns columns) {
+        this.columns = columns;
         books = new ArrayList<>();
-    } 
+        booksById = new ArrayList<>();
+        booksByKey = new ConcurrentHashMap<>();
+        titleIndex = new TrigramIndex(Book::getTitle, booksById::get);
+        authorIndex = new TrigramIndex(Book::getAuthor, booksById::get);
+        titleOrder = new SortedIndex(Book::getTitle, locale);
+        authorOrder = new SortedIndex(Book::getAuthor, locale);
+        availableBooks = new AvailableBooks();
+    }
+
+    private void restoreRows() {
+        for (int row = 0; row < columns.rows(); row++) {
+            if (columns.isRemoved(row)) {
+                booksById.add(null);
+            } else {
+                index(new Book(this, row));
+            }
+        }
+    }
 
     /**
-     * Returns the list of books in the catalog.
+     * Returns true if the catalog attached to books stored by an earlier run, so they need not be loaded again.
+     * @return true if the books were restored, false if the catalog started empty
+     */
+    public boolean isRestored() {
+        return columns.isRestored();
+    }
+
+    /**
+     * Releases the storage of the catalog. A catalog kept in memory-mapped files is written back and, if a
+     * fingerprint is given, marked as closed cleanly with it, so the next run that opens the store with the same
+     * fingerprint attaches to it. The catalog must not be used afterwards.
+     * @param fingerprint the fingerprint of the data the catalog now mirrors, or null if the catalog may not match
+     *        any saved data and must be loaded again on the next start
+     * @throws IOException if the files cannot be written back
+     */
+    public void close(String fingerprint) throws IOException {
+        lock.writeLock().lock();
+        try {
+            columns.close(fingerprint);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the books in the catalog.
      * @return the list of books in the catalog
      */
     public List<Book> getBooks() {
-        return books;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(books);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
-     * Adds a book to the catalog.
+     * Returns a page of the books in the catalog.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page, in catalog order
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooks(int from, int count) {
+        checkPage(from, count);
+        lock.readLock().lock();
+        try {
+            int start = Math.min(from, books.size());
+            int end = (int) Math.min(books.size(), (long) start + count);
+            return new ArrayList<>(books.subList(start, end));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of books in the catalog.
+     * @return the number of books in the catalog
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book to the catalog and assigns it the next identifier.
+     * The book's data moves into the catalog's columns, and the book becomes a view of its row.
+     * If another book with the same title and author is already indexed, the existing one stays the lookup result.
      * @param book the book to add to the catalog
+     * @throws IllegalArgumentException if the book already belongs to a catalog
      */
     public void addBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            if (book.getCatalog() != null) {
+                throw new IllegalArgumentException("\"" + book.getTitle() + "\" already belongs to a catalog.");
+            }
+            int row = columns.add(book.getTitle(), book.getAuthor(), book.getAvailableQuantity(), book.getTotalQuantity());
+            book.attach(this, row);
+            index(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a book that is already attached to its row to the lists and indexes of the catalog.
+     */
+    private void index(Book book) {
+        booksById.add(book);
         books.add(book);
+        booksByKey.putIfAbsent(keyOf(book.getTitle(), book.getAuthor()), book);
+        titleIndex.add(book);
+        authorIndex.add(book);
+        titleOrder.add(book);
+        authorOrder.add(book);
+        if (pendingOrderChanges != null) {
+            pendingOrderChanges.add(catalog -> {
+                catalog.titleOrder.add(book);
+                catalog.authorOrder.add(book);
+            });
+        }
+        availabilityChanged(book);
+    }
+
+    /**
+     * Adds one copy of the book with the given title and author, ignoring case.
+     * If the catalog has no such book yet, a new book with a single copy is added.
+     * Concurrent calls for the same new book add it only once.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the book that received the copy
+     */
+    public Book addCopy(String title, String author) {
+        return addCopies(title, author, 1);
+    }
+
+    /**
+     * Adds copies of the book with the given title and author, ignoring case.
+     * If the catalog has no such book yet, a new book with the given number of copies is added.
+     * Concurrent calls for the same new book add it only once.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @param copies the number of copies to add
+     * @return the book that received the copies
+     * @throws IllegalArgumentException if the number of copies is not positive
+     */
+    public Book addCopies(String title, String author, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Number of copies must be positive: " + copies);
+        }
+        String key = keyOf(title, author);
+        Book book = booksByKey.get(key);
+        if (book == null) {
+            lock.writeLock().lock();
+            try {
+                book = booksByKey.get(key);
+                if (book == null) {
+                    book = new Book(title, author, copies, copies);
+                    addBook(book);
+                    return book;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        book.addCopies(copies);
+        return book;
+    }
+
+    /**
+     * Removes a book from the catalog. The book's data is copied back into the book, which keeps its identifier.
+     * @param book the book to remove from the catalog
+     * @return true if the book was part of the catalog, false otherwise
+     */
+    public boolean removeBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            if (!books.remove(book)) {
+                return false;
+            }
+            String key = keyOf(book.getTitle(), book.getAuthor());
+            if (booksByKey.get(key) == book) {
+                booksByKey.remove(key);
+                books.stream()
+                    .filter(other -> keyOf(other.getTitle(), other.getAuthor()).equals(key))
+                    .findFirst()
+                    .ifPresent(other -> booksByKey.put(key, other));
+            }
+            titleIndex.remove(book);
+            authorIndex.remove(book);
+            titleOrder.remove(book);
+            authorOrder.remove(book);
+            if (pendingOrderChanges != null) {
+                pendingOrderChanges.add(catalog -> {
+                    catalog.titleOrder.remove(book);
+                    catalog.authorOrder.remove(book);
+                });
+            }
+            booksById.set(book.getId(), null);
+            synchronized (availableBooks) {
+                availableBooks.remove(book);
+            }
+            book.detach();
+            columns.remove(book.getId());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the book with the given title and author, ignoring case.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the matching book, or an empty optional if there is none
+     */
+    public Optional<Book> findBook(String title, String author) {
+        return Optional.ofNullable(booksByKey.get(keyOf(title, author)));
+    }
+
+    /**
+     * Returns the book with the given identifier.
+     * @param id the identifier assigned when the book was added
+     * @return the book, or an empty optional if no book has that identifier or it was removed
+     */
+    public Optional<Book> getBook(int id) {
+        lock.readLock().lock();
+        try {
+            return id >= 0 && id < booksById.size() ? Optional.ofNullable(booksById.get(id)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the catalog entry for the given book: the book itself if it is in the catalog, otherwise the book
+     * with the same title and author. Loaded loans only carry a title and an author; resolving them makes every
+     * loan share the one catalog entry, whose quantities borrowing and returning then update.
+     * @param book the book to resolve
+     * @return the catalog entry, or the given book if the catalog has no matching entry
+     */
+    public Book resolve(Book book) {
+        Book entry = booksByKey.get(keyOf(book.getTitle(), book.getAuthor()));
+        return entry != null ? entry : book;
+    }
+
+    /**
+     * Returns the books whose title contains the given query, ignoring case.
+     * @param query the text to search for
+     * @return the matching books, in catalog order
+     */
+    public List<Book> searchByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return titleIndex.search(query, books);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the books whose title contains the given query, ignoring case.
+     * @param query the text to search for
+     * @param from the position of the first match of the page
+     * @param count the maximum number of matches in the page
+     * @return the matching books of the page, in catalog order
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> searchByTitle(String query, int from, int count) {
+        checkPage(from, count);
+        lock.readLock().lock();
+        try {
+            return titleIndex.search(query, books, from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the books whose author contains the given query, ignoring case.
+     * @param query the text to search for
+     * @return the matching books, in catalog order
+     */
+    public List<Book> searchByAuthor(String query) {
+        lock.readLock().lock();
+        try {
+            return authorIndex.search(query, books);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the books whose author contains the given query, ignoring case.
+     * @param query the text to search for
+     * @param from the position of the first match of the page
+     * @param count the maximum number of matches in the page
+     * @return the matching books of the page, in catalog order
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> searchByAuthor(String query, int from, int count) {
+        checkPage(from, count);
+        lock.readLock().lock();
+        try {
+            return authorIndex.search(query, books, from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the books of the catalog sorted by title.
+     * @return the books sorted by title, according to the collation rules of the catalog's locale
+     */
+    public List<Book> getBooksSortedByTitle() {
+        lock.readLock().lock();
+        try {
+            return titleOrder.toList(books.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the books of the catalog sorted by title.
+     * @param from the position in the sorted listing of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page, sorted by title according to the collation rules of the catalog's locale
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooksSortedByTitle(int from, int count) {
+        checkPage(from, count);
+        lock.readLock().lock();
+        try {
+            return titleOrder.range(from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the books of the catalog sorted by author.
+     * Books by the same author stay in catalog order.
+     * @return the books sorted by author, according to the collation rules of the catalog's locale
+     */
+    public List<Book> getBooksSortedByAuthor() {
+        lock.readLock().lock();
+        try {
+            return authorOrder.toList(books.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the books of the catalog sorted by author.
+     * Books by the same author stay in catalog order.
+     * @param from the position in the sorted listing of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the books of the page, sorted by author according to the collation rules of the catalog's locale
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getBooksSortedByAuthor(int from, int count) {
+        checkPage(from, count);
+        lock.readLock().lock();
+        try {
+            return authorOrder.range(from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the books that have at least one available copy, in no particular order.
+     * To go through the available books without copying them, use {@link #forEachAvailableBook(Consumer)}.
+     * @return a list of the available books
+     */
+    public List<Book> getAvailableBooks() {
+        synchronized (availableBooks) {
+            return availableBooks.range(0, availableBooks.size());
+        }
+    }
+
+    /**
+     * Returns a page of the books that have at least one available copy. Positions index the books in the order
+     * of {@link #getAvailableBook(int)}, so a page costs only the books in it.
+     * @param from the position of the first book of the page
+     * @param count the maximum number of books in the page
+     * @return the available books of the page
+     * @throws IllegalArgumentException if the position or the count is negative
+     */
+    public List<Book> getAvailableBooks(int from, int count) {
+        checkPage(from, count);
+        synchronized (availableBooks) {
+            return availableBooks.range(from, count);
+        }
+    }
+
+    /**
+     * Returns the available book at the given position. A book's position changes when a book before the end
+     * stops being available, so a position read earlier may name a different book by now.
+     * @param position the position of the book, from 0 to {@link #countAvailableBooks()} - 1
+     * @return the book, or an empty optional if no book is available at that position
+     */
+    public Optional<Book> getAvailableBook(int position) {
+        synchronized (availableBooks) {
+            return Optional.ofNullable(availableBooks.get(position));
+        }
+    }
+
+    /**
+     * Calls the given action for each book that has at least one available copy, without copying the books.
+     * Borrowing and returning books waits until the action has been called for every book,
+     * so the action should be short and must not borrow or return books itself.
+     * @param action the action to call for each available book
+     */
+    public void forEachAvailableBook(Consumer<? super Book> action) {
+        synchronized (availableBooks) {
+            availableBooks.forEach(action);
+        }
+    }
+
+    /**
+     * Returns the number of books that have at least one available copy, in constant time.
+     * @return the number of available books
+     */
+    public int countAvailableBooks() {
+        synchronized (availableBooks) {
+            return availableBooks.size();
+        }
+    }
+
+    /**
+     * Updates the set of available books after the availability of a book in the catalog changed.
+     * The book's current state is read under the lock, so notifications of concurrent changes
+     * that arrive out of order still leave the set in agreement with the book.
+     * @param book the book whose availability changed
+     */
+    void availabilityChanged(Book book) {
+        synchronized (availableBooks) {
+            if (book.isAvailable()) {
+                availableBooks.add(book);
+            } else {
+                availableBooks.remove(book);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the sorted indexes for the collation rules of the given locale on a background thread.
+     * Until the rebuild completes, sorted listings keep the order of the previous locale.
+     * Books added or removed while the rebuild is running are applied to the new indexes before they are swapped in.
+     * @param locale the locale whose collation rules define the sorted listings
+     * @return a future that completes once the new indexes are in use
+     */
+    public CompletableFuture<Void> changeCollationLocale(Locale locale) {
+        List<Book> snapshot;
+        List<Consumer<Catalog>> changes = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            snapshot = new ArrayList<>(books);
+            pendingOrderChanges = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return CompletableFuture.runAsync(() -> {
+            SortedIndex newTitleOrder = new SortedIndex(Book::getTitle, locale);
+            SortedIndex newAuthorOrder = new SortedIndex(Book::getAuthor, locale);
+            snapshot.forEach(newTitleOrder::add);
+            snapshot.forEach(newAuthorOrder::add);
+            lock.writeLock().lock();
+            try {
+                if (pendingOrderChanges != changes) {
+                    return;
+                }
+                titleOrder = newTitleOrder;
+                authorOrder = newAuthorOrder;
+                pendingOrderChanges = null;
+                changes.forEach(change -> change.accept(this));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }, COLLATION_EXECUTOR);
+    }
+
+    private static void checkPage(int from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IllegalArgumentException("Invalid page: from " + from + ", count " + count);
+        }
+    }
+
+    /**
+     * Returns the key under which the catalog looks up a book: the case-folded title and author.
+     */
+    static String keyOf(String title, String author) {
+        return CaseFold.fold(title) + '\u0000' + CaseFold.fold(author);
     }
-}
\ No newline at end of file
+}
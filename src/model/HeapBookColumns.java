@@ -0,0 +1,125 @@
+package model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Book columns on the Java heap: int arrays for the quantities and the title and author codes,
+ * and a {@link StringDictionary} each for titles and authors, so a name shared by many books is kept once.
+ * <p>
+ * The columns are split into fixed-size pages that are never moved once allocated, so a compare-and-set on a
+ * quantity cannot be lost to a concurrent resize.
+ */
+final class HeapBookColumns implements BookColumns {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final VarHandle INT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final StringDictionary titles = new StringDictionary();
+    private final StringDictionary authors = new StringDictionary();
+    private volatile Page[] pages = new Page[0];
+    private int rows;
+
+    @Override
+    public int add(String title, String author, int availableQuantity, int totalQuantity) {
+        int row = rows;
+        Page[] current = pages;
+        if ((row >> PAGE_SHIFT) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Page();
+        }
+        Page page = current[row >> PAGE_SHIFT];
+        int offset = row & PAGE_MASK;
+        page.titles[offset] = titles.encode(title);
+        page.authors[offset] = authors.encode(author);
+        page.total[offset] = totalQuantity;
+        page.available[offset] = availableQuantity;
+        pages = current;
+        rows++;
+        return row;
+    }
+
+    @Override
+    public String title(int row) {
+        return titles.decode(page(row).titles[row & PAGE_MASK]);
+    }
+
+    @Override
+    public String author(int row) {
+        return authors.decode(page(row).authors[row & PAGE_MASK]);
+    }
+
+    @Override
+    public int available(int row) {
+        return (int) INT.getVolatile(page(row).available, row & PAGE_MASK);
+    }
+
+    @Override
+    public int total(int row) {
+        return (int) INT.getVolatile(page(row).total, row & PAGE_MASK);
+    }
+
+    @Override
+    public boolean compareAndSetAvailable(int row, int expected, int value) {
+        return INT.compareAndSet(page(row).available, row & PAGE_MASK, expected, value);
+    }
+
+    @Override
+    public int getAndSetAvailable(int row, int value) {
+        return (int) INT.getAndSet(page(row).available, row & PAGE_MASK, value);
+    }
+
+    @Override
+    public int getAndAddAvailable(int row, int delta) {
+        return (int) INT.getAndAdd(page(row).available, row & PAGE_MASK, delta);
+    }
+
+    @Override
+    public void setTotal(int row, int value) {
+        INT.setVolatile(page(row).total, row & PAGE_MASK, value);
+    }
+
+    @Override
+    public int addTotal(int row, int delta) {
+        return (int) INT.getAndAdd(page(row).total, row & PAGE_MASK, delta) + delta;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public boolean isRemoved(int row) {
+        return false;
+    }
+
+    @Override
+    public void remove(int row) {
+    }
+
+    @Override
+    public boolean isRestored() {
+        return false;
+    }
+
+    @Override
+    public void close(String fingerprint) {
+    }
+
+    private Page page(int row) {
+        return pages[row >> PAGE_SHIFT];
+    }
+
+    /**
+     * A fixed-size block of rows.
+     */
+    private static final class Page {
+        private final int[] available = new int[PAGE_SIZE];
+        private final int[] total = new int[PAGE_SIZE];
+        private final int[] titles = new int[PAGE_SIZE];
+        private final int[] authors = new int[PAGE_SIZE];
+    }
+}
@@ -0,0 +1,174 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The books a reader has borrowed and the number of copies of each.
+ * <p>
+ * The loans are kept in parallel arrays sorted by book identifier, so a book is found by binary search and every
+ * borrowed book costs one array slot per array however many copies are borrowed. Books that had no identifier when
+ * they were borrowed, such as loans read from storage before they are resolved against the catalog, are kept in
+ * front and matched by reference.
+ * <p>
+ * This class is not thread-safe; the reader that owns it guards it with its own lock.
+ */
+final class Loans {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] ids = new int[0];
+    private int[] counts = new int[0];
+    private Book[] books = new Book[0];
+    private int size;
+    private int total;
+
+    /**
+     * Records borrowed copies of a book.
+     * @param book the borrowed book
+     * @param copies the number of copies, at least 1
+     */
+    void add(Book book, int copies) {
+        int index = indexOf(book);
+        if (index >= 0) {
+            counts[index] += copies;
+        } else {
+            insert(-index - 1, book, copies);
+        }
+        total += copies;
+    }
+
+    /**
+     * Removes one borrowed copy of a book.
+     * @param book the returned book
+     * @return true if the book was borrowed, false otherwise
+     */
+    boolean remove(Book book) {
+        int index = indexOf(book);
+        if (index < 0) {
+            return false;
+        }
+        if (--counts[index] == 0) {
+            int moved = size - index - 1;
+            System.arraycopy(ids, index + 1, ids, index, moved);
+            System.arraycopy(counts, index + 1, counts, index, moved);
+            System.arraycopy(books, index + 1, books, index, moved);
+            books[--size] = null;
+        }
+        total--;
+        return true;
+    }
+
+    /**
+     * Returns the number of borrowed copies of a book.
+     * @param book the book to look up
+     * @return the number of copies, or 0 if the book is not borrowed
+     */
+    int count(Book book) {
+        int index = indexOf(book);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * Returns the first borrowed book that matches the given condition.
+     * @param condition the condition to test the borrowed books with
+     * @return the first matching book, or null if no borrowed book matches
+     */
+    Book find(Predicate<Book> condition) {
+        for (int i = 0; i < size; i++) {
+            if (condition.test(books[i])) {
+                return books[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of borrowed copies of all books.
+     * @return the total number of copies
+     */
+    int total() {
+        return total;
+    }
+
+    /**
+     * Returns the borrowed books, with a book listed once for every borrowed copy.
+     * @return a new list of the borrowed books, ordered by book identifier
+     */
+    List<Book> toList() {
+        List<Book> list = new ArrayList<>(total);
+        for (int i = 0; i < size; i++) {
+            for (int copy = 0; copy < counts[i]; copy++) {
+                list.add(books[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Replaces every borrowed book with the book the given function maps it to.
+     * Loans that end up on the same book are merged.
+     * @param resolver the function that returns the replacement for a borrowed book
+     */
+    void replaceAll(UnaryOperator<Book> resolver) {
+        Book[] oldBooks = Arrays.copyOf(books, size);
+        int[] oldCounts = Arrays.copyOf(counts, size);
+        Arrays.fill(books, 0, size, null);
+        size = 0;
+        total = 0;
+        for (int i = 0; i < oldBooks.length; i++) {
+            add(resolver.apply(oldBooks[i]), oldCounts[i]);
+        }
+    }
+
+    /**
+     * Finds a book in the arrays.
+     * @return the index of the book, or {@code -(insertion point) - 1} if the book is not borrowed
+     */
+    private int indexOf(Book book) {
+        // Books that were borrowed before they got an identifier stay in front.
+        for (int i = 0; i < size && ids[i] < 0; i++) {
+            if (books[i] == book) {
+                return i;
+            }
+        }
+        int id = book.getId();
+        if (id < 0) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return index;
+        }
+        // Books of different catalogs can share an identifier.
+        int first = index;
+        while (first > 0 && ids[first - 1] == id) {
+            first--;
+        }
+        for (int i = first; i < size && ids[i] == id; i++) {
+            if (books[i] == book) {
+                return i;
+            }
+        }
+        return -first - 1;
+    }
+
+    private void insert(int index, Book book, int copies) {
+        if (size == ids.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            books = Arrays.copyOf(books, capacity);
+        }
+        int moved = size - index;
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(counts, index, counts, index + 1, moved);
+        System.arraycopy(books, index, books, index + 1, moved);
+        ids[index] = book.getId();
+        counts[index] = copies;
+        books[index] = book;
+        size++;
+    }
+}
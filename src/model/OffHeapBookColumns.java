@@ -0,0 +1,454 @@
+package model;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Book columns outside the Java heap. The quantities, the title and author codes and the bytes of the titles
+ * and authors live in direct buffers, so a large catalog adds little to the heap and nothing for the garbage
+ * collector to trace. Each distinct title and author is also kept decoded on the heap, once, as it is stored or
+ * attached, so reading a title or author, as sorting, searching and paging do over and over, returns the same
+ * instance without decoding or allocating.
+ * <p>
+ * With a directory, the buffers are memory-mapped from {@code books.columns} and {@code books.strings} in it.
+ * The columns file starts with a header that records the number of rows, whether the columns were closed
+ * cleanly, and the fingerprint of the persistency data they mirrored at that point. A cleanly closed store is
+ * attached again on the next start instead of being filled from the persistency, but only if the persistency
+ * still has the same fingerprint; the header is marked dirty as soon as it is attached, so after a crash the store
+ * is rebuilt. The columns file is locked while it is open, so two processes never map the same store.
+ * Without a directory the buffers are allocated in direct memory and discarded with the catalog.
+ * <p>
+ * Rows are stored in pages of 4096 rows, one 16 KB column after the other. Strings are stored once each as a
+ * length followed by the UTF-8 bytes, aligned to four bytes, in pages of 1 MB; a string's code is its offset
+ * divided by four. A hash table of codes on the heap finds existing strings when a row is added, and a second one
+ * maps each code to its decoded string. Only the thread adding rows writes either table; a new decoded table is
+ * filled before it is published, so readers look strings up without locking.
+ */
+final class OffHeapBookColumns implements BookColumns {
+    static final String COLUMNS_FILENAME = "books.columns";
+    static final String STRINGS_FILENAME = "books.strings";
+
+    private static final int MAGIC = 0x43424b31;
+    private static final int HEADER_BYTES = 4096;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CLEAN_OFFSET = 4;
+    private static final int ROWS_OFFSET = 8;
+    private static final int STRING_BYTES_OFFSET = 16;
+    private static final int FINGERPRINT_OFFSET = 64;
+    private static final int MAX_FINGERPRINT_BYTES = HEADER_BYTES - FINGERPRINT_OFFSET - Integer.BYTES;
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int COLUMN_BYTES = PAGE_SIZE * Integer.BYTES;
+    private static final int PAGE_BYTES = 4 * COLUMN_BYTES;
+    private static final int AVAILABLE = 0;
+    private static final int TOTAL = COLUMN_BYTES;
+    private static final int TITLE = 2 * COLUMN_BYTES;
+    private static final int AUTHOR = 3 * COLUMN_BYTES;
+    private static final int REMOVED = -1;
+
+    private static final int STRING_PAGE_SHIFT = 20;
+    private static final int STRING_PAGE_BYTES = 1 << STRING_PAGE_SHIFT;
+    private static final int END_OF_PAGE = -1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel columnsFile;
+    private final FileChannel stringsFile;
+    private final ByteBuffer header;
+    private final boolean restored;
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+    private volatile ByteBuffer[] stringPages = new ByteBuffer[0];
+    private int rows;
+    private long stringBytes;
+    private int[] slots = new int[1024];
+    private int strings;
+    private volatile DecodedStrings decoded = new DecodedStrings(1024);
+
+    /**
+     * Opens the columns.
+     * @param directory the directory of the memory-mapped files, or null to use direct memory
+     * @param fingerprint the fingerprint the stored columns must have been closed with to be attached again,
+     *        or null to always start empty
+     * @throws IOException if the files cannot be opened or mapped, or are locked by another process
+     */
+    OffHeapBookColumns(Path directory, String fingerprint) throws IOException {
+        if (directory == null) {
+            columnsFile = null;
+            stringsFile = null;
+            header = null;
+            restored = false;
+            return;
+        }
+        Files.createDirectories(directory);
+        columnsFile = FileChannel.open(directory.resolve(COLUMNS_FILENAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = columnsFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            columnsFile.close();
+            throw new IOException("The catalog store in " + directory + " is in use by another process");
+        }
+        stringsFile = FileChannel.open(directory.resolve(STRINGS_FILENAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean clean = columnsFile.size() >= HEADER_BYTES;
+        header = map(columnsFile, 0, HEADER_BYTES);
+        clean = clean && header.getInt(MAGIC_OFFSET) == MAGIC && header.getInt(CLEAN_OFFSET) == 1
+                && fingerprint != null && fingerprint.equals(storedFingerprint());
+        if (clean) {
+            attach(header.getInt(ROWS_OFFSET), header.getLong(STRING_BYTES_OFFSET));
+        } else {
+            columnsFile.truncate(HEADER_BYTES);
+            stringsFile.truncate(0);
+            header.putInt(MAGIC_OFFSET, MAGIC);
+        }
+        restored = clean;
+        header.putInt(CLEAN_OFFSET, 0);
+        ((MappedByteBuffer) header).force();
+    }
+
+    @Override
+    public int add(String title, String author, int availableQuantity, int totalQuantity) {
+        int row = rows;
+        ByteBuffer[] current = pages;
+        if ((row >> PAGE_SHIFT) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = allocate(columnsFile, HEADER_BYTES + (long) (current.length - 1) * PAGE_BYTES, PAGE_BYTES);
+        }
+        ByteBuffer page = current[row >> PAGE_SHIFT];
+        int offset = (row & PAGE_MASK) * Integer.BYTES;
+        page.putInt(TITLE + offset, encode(title));
+        page.putInt(AUTHOR + offset, encode(author));
+        page.putInt(TOTAL + offset, totalQuantity);
+        page.putInt(AVAILABLE + offset, availableQuantity);
+        pages = current;
+        rows++;
+        return row;
+    }
+
+    @Override
+    public String title(int row) {
+        return decode(page(row).getInt(TITLE + offset(row)));
+    }
+
+    @Override
+    public String author(int row) {
+        return decode(page(row).getInt(AUTHOR + offset(row)));
+    }
+
+    @Override
+    public int available(int row) {
+        return (int) INT.getVolatile(page(row), AVAILABLE + offset(row));
+    }
+
+    @Override
+    public int total(int row) {
+        return (int) INT.getVolatile(page(row), TOTAL + offset(row));
+    }
+
+    @Override
+    public boolean compareAndSetAvailable(int row, int expected, int value) {
+        return INT.compareAndSet(page(row), AVAILABLE + offset(row), expected, value);
+    }
+
+    @Override
+    public int getAndSetAvailable(int row, int value) {
+        return (int) INT.getAndSet(page(row), AVAILABLE + offset(row), value);
+    }
+
+    @Override
+    public int getAndAddAvailable(int row, int delta) {
+        return (int) INT.getAndAdd(page(row), AVAILABLE + offset(row), delta);
+    }
+
+    @Override
+    public void setTotal(int row, int value) {
+        INT.setVolatile(page(row), TOTAL + offset(row), value);
+    }
+
+    @Override
+    public int addTotal(int row, int delta) {
+        return (int) INT.getAndAdd(page(row), TOTAL + offset(row), delta) + delta;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public boolean isRemoved(int row) {
+        return page(row).getInt(TITLE + offset(row)) == REMOVED;
+    }
+
+    @Override
+    public void remove(int row) {
+        page(row).putInt(TITLE + offset(row), REMOVED);
+    }
+
+    @Override
+    public boolean isRestored() {
+        return restored;
+    }
+
+    @Override
+    public void close(String fingerprint) throws IOException {
+        if (columnsFile != null) {
+            for (ByteBuffer page : pages) {
+                ((MappedByteBuffer) page).force();
+            }
+            for (ByteBuffer page : stringPages) {
+                ((MappedByteBuffer) page).force();
+            }
+            byte[] fingerprintBytes = fingerprint == null ? null : fingerprint.getBytes(StandardCharsets.UTF_8);
+            if (fingerprintBytes != null && fingerprintBytes.length <= MAX_FINGERPRINT_BYTES) {
+                header.putInt(ROWS_OFFSET, rows);
+                header.putLong(STRING_BYTES_OFFSET, stringBytes);
+                header.putInt(FINGERPRINT_OFFSET, fingerprintBytes.length);
+                header.put(FINGERPRINT_OFFSET + Integer.BYTES, fingerprintBytes);
+                header.putInt(CLEAN_OFFSET, 1);
+                ((MappedByteBuffer) header).force();
+            }
+            columnsFile.close();
+            stringsFile.close();
+        }
+        pages = new ByteBuffer[0];
+        stringPages = new ByteBuffer[0];
+    }
+
+    /**
+     * Returns the fingerprint recorded in the header, or null if the header holds none.
+     */
+    private String storedFingerprint() {
+        int length = header.getInt(FINGERPRINT_OFFSET);
+        if (length < 0 || length > MAX_FINGERPRINT_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        header.get(FINGERPRINT_OFFSET + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the pages of a cleanly closed store and rebuilds the hash table of its strings.
+     */
+    private void attach(int storedRows, long storedStringBytes) throws IOException {
+        ByteBuffer[] rowPages = new ByteBuffer[(storedRows + PAGE_SIZE - 1) >> PAGE_SHIFT];
+        for (int i = 0; i < rowPages.length; i++) {
+            rowPages[i] = map(columnsFile, HEADER_BYTES + (long) i * PAGE_BYTES, PAGE_BYTES);
+        }
+        ByteBuffer[] textPages = new ByteBuffer[(int) ((storedStringBytes + STRING_PAGE_BYTES - 1) >> STRING_PAGE_SHIFT)];
+        for (int i = 0; i < textPages.length; i++) {
+            textPages[i] = map(stringsFile, (long) i << STRING_PAGE_SHIFT, STRING_PAGE_BYTES);
+        }
+        pages = rowPages;
+        stringPages = textPages;
+        rows = storedRows;
+        stringBytes = storedStringBytes;
+        long position = 0;
+        while (position < stringBytes) {
+            ByteBuffer page = textPages[(int) (position >> STRING_PAGE_SHIFT)];
+            int start = (int) (position & (STRING_PAGE_BYTES - 1));
+            int length = page.getInt(start);
+            if (length == END_OF_PAGE) {
+                position = ((position >> STRING_PAGE_SHIFT) + 1) << STRING_PAGE_SHIFT;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            page.get(start + Integer.BYTES, bytes);
+            insertSlot((int) (position >> 2), hash(page, start + Integer.BYTES, length), new String(bytes, StandardCharsets.UTF_8));
+            position += align(Integer.BYTES + length);
+        }
+    }
+
+    private int encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > STRING_PAGE_BYTES - Integer.BYTES) {
+            throw new IllegalArgumentException("Text is too long for the catalog store: " + bytes.length + " bytes");
+        }
+        int hash = hash(ByteBuffer.wrap(bytes), 0, bytes.length);
+        int mask = slots.length - 1;
+        for (int slot = mix(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int code = slots[slot] - 1;
+            if (equalsAt(code, bytes)) {
+                return code;
+            }
+        }
+        return append(value, bytes, hash);
+    }
+
+    private int append(String value, byte[] bytes, int hash) {
+        int entryBytes = align(Integer.BYTES + bytes.length);
+        int start = (int) (stringBytes & (STRING_PAGE_BYTES - 1));
+        ByteBuffer[] current = stringPages;
+        if (start != 0 && start + entryBytes > STRING_PAGE_BYTES) {
+            current[current.length - 1].putInt(start, END_OF_PAGE);
+            stringBytes += STRING_PAGE_BYTES - start;
+            start = 0;
+        }
+        if (start == 0) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = allocate(stringsFile, stringBytes, STRING_PAGE_BYTES);
+        }
+        ByteBuffer page = current[current.length - 1];
+        page.putInt(start, bytes.length);
+        page.put(start + Integer.BYTES, bytes);
+        stringPages = current;
+        int code = (int) (stringBytes >> 2);
+        stringBytes += entryBytes;
+        insertSlot(code, hash, value);
+        return code;
+    }
+
+    private String decode(int code) {
+        return decoded.get(code);
+    }
+
+    private boolean equalsAt(int code, byte[] bytes) {
+        long position = (long) code << 2;
+        ByteBuffer page = stringPages[(int) (position >> STRING_PAGE_SHIFT)];
+        int start = (int) (position & (STRING_PAGE_BYTES - 1));
+        return page.getInt(start) == bytes.length
+                && page.slice(start + Integer.BYTES, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    private void insertSlot(int code, int hash, String value) {
+        if ((strings + 1) * 2 > slots.length) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = code + 1;
+        strings++;
+        DecodedStrings table = decoded;
+        if (strings * 2 > table.codes.length) {
+            table = table.grow();
+            decoded = table;
+        }
+        table.put(code, value);
+    }
+
+    private void rehash() {
+        int[] oldSlots = slots;
+        int[] newSlots = new int[oldSlots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int entry : oldSlots) {
+            if (entry == 0) {
+                continue;
+            }
+            long position = (long) (entry - 1) << 2;
+            ByteBuffer page = stringPages[(int) (position >> STRING_PAGE_SHIFT)];
+            int start = (int) (position & (STRING_PAGE_BYTES - 1));
+            int slot = mix(hash(page, start + Integer.BYTES, page.getInt(start))) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = entry;
+        }
+        slots = newSlots;
+    }
+
+    private ByteBuffer page(int row) {
+        return pages[row >> PAGE_SHIFT];
+    }
+
+    private static int offset(int row) {
+        return (row & PAGE_MASK) * Integer.BYTES;
+    }
+
+    private static ByteBuffer allocate(FileChannel file, long position, int size) {
+        if (file == null) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        try {
+            return map(file, position, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow the catalog store: " + e.getMessage(), e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel file, long position, int size) throws IOException {
+        return file.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder());
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int length) {
+        int hash = 1;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    /**
+     * An open-addressing hash table from string codes, stored plus one so that zero marks an empty slot,
+     * to the decoded strings.
+     */
+    private static final class DecodedStrings {
+        private final int[] codes;
+        private final String[] values;
+
+        DecodedStrings(int capacity) {
+            codes = new int[capacity];
+            values = new String[capacity];
+        }
+
+        String get(int code) {
+            int mask = codes.length - 1;
+            for (int slot = mix(code) & mask; codes[slot] != 0; slot = (slot + 1) & mask) {
+                if (codes[slot] == code + 1) {
+                    return values[slot];
+                }
+            }
+            throw new IllegalStateException("No string with code " + code + " in the catalog store");
+        }
+
+        void put(int code, String value) {
+            int mask = codes.length - 1;
+            int slot = mix(code) & mask;
+            while (codes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            values[slot] = value;
+            codes[slot] = code + 1;
+        }
+
+        DecodedStrings grow() {
+            DecodedStrings grown = new DecodedStrings(codes.length * 2);
+            for (int slot = 0; slot < codes.length; slot++) {
+                if (codes[slot] != 0) {
+                    grown.put(codes[slot] - 1, values[slot]);
+                }
+            }
+            return grown;
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 /**
  * Represents a reader who can borrow books from the library.
+ * The borrowed books are kept with a count of copies per book, sorted by book identifier, so borrowing, returning
+ * and looking up a loan take logarithmic time even for readers with thousands of loans.
+ * The loans are guarded by the reader's own lock, so different readers never contend with each other.
  */
 public class Reader implements Serializable {
+    private static final long serialVersionUID = 2419803184626172879L;
+
+    /** The serialized form stays a name and a list of borrowed books, so older files can still be read. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("borrowedBooks", List.class),
+        new ObjectStreamField("name", String.class)
+    };
+
     private String name;
-    private List<Book> borrowedBooks;
+    private transient Loans loans;
 
     /**
      * Constructs a new Reader object with the given name.
@@ -17,7 +33,7 @@ public class Reader implements Serializable {
      */
     public Reader(String name) {
         this.name = name;
-        this.borrowedBooks = new ArrayList<>();
+        this.loans = new Loans();
     }
 
     /**
@@ -29,30 +45,114 @@ public class Reader implements Serializable {
     }
 
     /**
-     * Returns a list of books that the reader has borrowed.
+     * Returns a snapshot of the books that the reader has borrowed.
+     * A book is listed once for every borrowed copy, and the books are in the order they were added to the catalog.
      * @return a list of books that the reader has borrowed
      */
-    public List<Book> getBorrowedBooks() {
-        return this.borrowedBooks;
+    public synchronized List<Book> getBorrowedBooks() {
+        return loans.toList();
+    }
+
+    /**
+     * Returns the number of copies the reader has borrowed, counting every copy of a book.
+     * @return the number of borrowed copies
+     */
+    public synchronized int getLoanCount() {
+        return loans.total();
+    }
+
+    /**
+     * Returns the number of copies of the given book that the reader has borrowed.
+     * @param book the book to look up
+     * @return the number of borrowed copies of the book, or 0 if the reader has not borrowed it
+     */
+    public synchronized int getLoanCount(Book book) {
+        return loans.count(book);
+    }
+
+    /**
+     * Finds a book the reader has borrowed by its title and author, which are compared the way the catalog
+     * compares them: normalized and ignoring case.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the borrowed book, or an empty Optional if the reader has not borrowed such a book
+     */
+    public synchronized Optional<Book> findBorrowedBook(String title, String author) {
+        String key = Catalog.keyOf(title, author);
+        return Optional.ofNullable(loans.find(book -> Catalog.keyOf(book.getTitle(), book.getAuthor()).equals(key)));
     }
 
     /**
      * Borrows a book from the library and adds it to the reader's list of borrowed books.
      * Also updates the available quantity of the book.
      * @param book the book to be borrowed
+     * @throws IllegalStateException if no copy of the book is available
      */
     public void borrowBook(Book book) {
-        borrowedBooks.add(book);
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
+        if (!book.borrowCopy()) {
+            throw new IllegalStateException("No copies of \"" + book.getTitle() + "\" are available.");
+        }
+        synchronized (this) {
+            loans.add(book, 1);
+        }
     }
 
     /**
      * Returns a book to the library and removes it from the reader's list of borrowed books.
      * Also updates the available quantity of the book.
      * @param book the book to be returned
+     * @throws IllegalArgumentException if the reader has not borrowed the book
+     * @throws IllegalStateException if all copies of the book are already available, so the copy cannot go back;
+     *         the loan is kept
      */
     public void returnBook(Book book) {
-        borrowedBooks.remove(book);
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
+        synchronized (this) {
+            if (!loans.remove(book)) {
+                throw new IllegalArgumentException("\"" + book.getTitle() + "\" is not borrowed by " + name + ".");
+            }
+        }
+        if (!book.returnCopy()) {
+            synchronized (this) {
+                loans.add(book, 1);
+            }
+            throw new IllegalStateException("All copies of \"" + book.getTitle() + "\" are already available.");
+        }
+    }
+
+    /**
+     * Records a loan that was made earlier, without changing the available quantity of the book.
+     * Used when loading readers from persistent storage.
+     * @param book the borrowed book
+     */
+    public synchronized void restoreLoan(Book book) {
+        loans.add(book, 1);
+    }
+
+    /**
+     * Replaces every borrowed book with the book the given function maps it to.
+     * Used to point loans loaded from persistent storage at the entries of the catalog.
+     * @param resolver the function that returns the replacement for a borrowed book
+     */
+    public synchronized void resolveLoans(UnaryOperator<Book> resolver) {
+        loans.replaceAll(resolver);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("borrowedBooks", loans.toList());
+        fields.put("name", name);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        loans = new Loans();
+        List<?> borrowedBooks = (List<?>) fields.get("borrowedBooks", null);
+        if (borrowedBooks != null) {
+            for (Object book : borrowedBooks) {
+                loans.add((Book) book, 1);
+            }
+        }
     }
-}
\ No newline at end of file
+}
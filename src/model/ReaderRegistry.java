@@ -0,0 +1,74 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The ReaderRegistry class holds the readers of the library, indexed by their case-folded name.
+ * Readers are kept in registration order. The registry is safe for concurrent use.
+ */
+public class ReaderRegistry {
+    private Map<String, Reader> readersByName;
+    private Queue<Reader> readersInOrder;
+
+    /**
+     * Constructs an empty registry.
+     */
+    public ReaderRegistry() {
+        readersByName = new ConcurrentHashMap<>();
+        readersInOrder = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Registers a reader, unless a reader with the same name (ignoring case) is already registered.
+     * @param reader the reader to register
+     * @return true if the reader was registered, false if the name was already taken
+     */
+    public boolean register(Reader reader) {
+        if (readersByName.putIfAbsent(CaseFold.fold(reader.getName()), reader) != null) {
+            return false;
+        }
+        readersInOrder.add(reader);
+        return true;
+    }
+
+    /**
+     * Finds the reader with the given name, ignoring case.
+     * @param name the name of the reader
+     * @return the matching reader, or an empty optional if there is none
+     */
+    public Optional<Reader> findReader(String name) {
+        return Optional.ofNullable(readersByName.get(CaseFold.fold(name)));
+    }
+
+    /**
+     * Returns true if a reader with the given name (ignoring case) is registered.
+     * @param name the name of the reader
+     * @return true if the reader is registered, false otherwise
+     */
+    public boolean contains(String name) {
+        return readersByName.containsKey(CaseFold.fold(name));
+    }
+
+    /**
+     * Returns an unmodifiable view of the registered readers, in registration order.
+     * Iterating the view while readers are being registered is safe and may or may not include the new readers.
+     * @return the registered readers
+     */
+    public Collection<Reader> getReaders() {
+        return Collections.unmodifiableCollection(readersInOrder);
+    }
+
+    /**
+     * Returns the number of registered readers.
+     * @return the number of registered readers
+     */
+    public int size() {
+        return readersByName.size();
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * An ordered index of books by a text field, keyed on precomputed {@link CollationKey}s for a locale.
+ * Books with equal keys are kept in the order in which they were added, so listing the index
+ * gives the same result as a stable sort of the catalog.
+ */
+final class SortedIndex {
+    private final Function<Book, String> field;
+    private final Collator collator;
+    private final TreeMap<CollationKey, List<Book>> entries;
+
+    /**
+     * Creates an empty index over the given field of a book, ordered by the collation rules of the given locale.
+     * @param field the function returning the indexed text of a book
+     * @param locale the locale whose collation rules define the order
+     */
+    SortedIndex(Function<Book, String> field, Locale locale) {
+        this.field = field;
+        this.collator = Collator.getInstance(locale);
+        this.entries = new TreeMap<>();
+    }
+
+    /**
+     * Adds a book to the index.
+     * @param book the book to add
+     */
+    void add(Book book) {
+        entries.computeIfAbsent(collator.getCollationKey(field.apply(book)), key -> new ArrayList<>(1)).add(book);
+    }
+
+    /**
+     * Removes a book from the index.
+     * @param book the book to remove
+     */
+    void remove(Book book) {
+        CollationKey key = collator.getCollationKey(field.apply(book));
+        List<Book> bucket = entries.get(key);
+        if (bucket != null && bucket.remove(book) && bucket.isEmpty()) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Returns the indexed books in order.
+     * @param size the number of indexed books, used to size the result
+     * @return the books in collation order
+     */
+    List<Book> toList(int size) {
+        List<Book> sorted = new ArrayList<>(size);
+        entries.values().forEach(sorted::addAll);
+        return sorted;
+    }
+
+    /**
+     * Returns a range of the indexed books in order. Whole groups of books with equal keys are skipped
+     * by their size, so the cost grows with the end of the range rather than with the size of the index.
+     * @param from the position of the first book of the range
+     * @param count the maximum number of books in the range
+     * @return the books of the range in collation order
+     */
+    List<Book> range(int from, int count) {
+        List<Book> range = new ArrayList<>();
+        int skip = from;
+        for (List<Book> bucket : entries.values()) {
+            if (range.size() == count) {
+                break;
+            }
+            if (skip >= bucket.size()) {
+                skip -= bucket.size();
+                continue;
+            }
+            int end = (int) Math.min(bucket.size(), (long) skip + count - range.size());
+            range.addAll(bucket.subList(skip, end));
+            skip = 0;
+        }
+        return range;
+    }
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Encodes strings as dense integer codes, storing every distinct string once.
+ * <p>
+ * Codes are looked up in an open-addressing table of ints, so an entry costs a slot in the table and a slot in the
+ * array of values, without a boxed key or a map node. Codes are never reused and the values are never removed.
+ * <p>
+ * Encoding must be serialized by the caller. Decoding does not lock: a code is safe to decode on any thread that
+ * obtained it through a happens-before edge from the thread that encoded it.
+ */
+final class StringDictionary {
+    private volatile String[] values = new String[16];
+    private int size;
+    private int[] slots = new int[32];
+
+    /**
+     * Returns the code of the given string, adding the string if it is not in the dictionary yet.
+     * @param value the string to encode
+     * @return the code of the string
+     */
+    int encode(String value) {
+        int mask = slots.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        String[] current = values;
+        while (slots[slot] != 0) {
+            int code = slots[slot] - 1;
+            if (current[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int code = size;
+        if (code == current.length) {
+            current = Arrays.copyOf(current, code + (code >> 1));
+        }
+        current[code] = value;
+        values = current;
+        slots[slot] = code + 1;
+        size++;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Returns the string with the given code.
+     * @param code a code returned by {@link #encode(String)}
+     * @return the string
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     * @return the number of strings
+     */
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        String[] current = values;
+        for (int code = 0; code < size; code++) {
+            int slot = mix(current[code].hashCode()) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = code + 1;
+        }
+        slots = newSlots;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
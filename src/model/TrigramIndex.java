@@ -0,0 +1,168 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An inverted index from the trigrams (three-character substrings) of a case-folded text field to the books containing them.
+ * Posting lists are sorted arrays of book identifiers. Identifiers are assigned in the order in which books are added,
+ * so search results come back in catalog order, and a posting costs four bytes instead of a set entry.
+ */
+final class TrigramIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final Function<Book, String> field;
+    private final IntFunction<Book> booksById;
+    private final Map<String, Posting> postings;
+
+    /**
+     * Creates an empty index over the given field of a book.
+     * @param field the function returning the indexed text of a book
+     * @param booksById the function returning the indexed book with the given identifier
+     */
+    TrigramIndex(Function<Book, String> field, IntFunction<Book> booksById) {
+        this.field = field;
+        this.booksById = booksById;
+        this.postings = new HashMap<>();
+    }
+
+    /**
+     * Adds a book to the posting lists of all trigrams of its field.
+     * @param book the book to index, which must have an identifier
+     */
+    void add(Book book) {
+        String text = CaseFold.fold(field.apply(book));
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            postings.computeIfAbsent(text.substring(i, i + GRAM_LENGTH), gram -> new Posting()).add(book.getId());
+        }
+    }
+
+    /**
+     * Removes a book from the posting lists of all trigrams of its field.
+     * @param book the book to remove from the index
+     */
+    void remove(Book book) {
+        String text = CaseFold.fold(field.apply(book));
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM_LENGTH);
+            Posting posting = postings.get(gram);
+            if (posting != null && posting.remove(book.getId()) && posting.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Returns the books whose field contains the given query, ignoring case.
+     * The posting lists of the query's trigrams are intersected starting from the shortest one,
+     * and only the remaining candidates are checked with {@link String#contains}.
+     * Queries shorter than a trigram cannot use the index and are checked against every book.
+     * @param query the text to search for
+     * @param allBooks all books of the catalog, in catalog order
+     * @return the matching books, in catalog order
+     */
+    List<Book> search(String query, Collection<Book> allBooks) {
+        return search(query, allBooks, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a range of the books whose field contains the given query, ignoring case.
+     * Candidates are checked one at a time and the search stops once the range is full,
+     * so the cost grows with the end of the range rather than with the number of matches.
+     * @param query the text to search for
+     * @param allBooks all books of the catalog, in catalog order
+     * @param from the position of the first match of the range
+     * @param count the maximum number of matches in the range
+     * @return the matching books of the range, in catalog order
+     */
+    List<Book> search(String query, Collection<Book> allBooks, int from, int count) {
+        String foldedQuery = CaseFold.fold(query);
+        Stream<Book> candidates = foldedQuery.length() < GRAM_LENGTH ? allBooks.stream() : candidates(foldedQuery);
+        return candidates
+            .filter(book -> CaseFold.fold(field.apply(book)).contains(foldedQuery))
+            .skip(from)
+            .limit(count)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Returns the books in the posting lists of all trigrams of the query, in catalog order.
+     * The shortest posting list is walked and each of its identifiers is looked up in the others.
+     */
+    private Stream<Book> candidates(String foldedQuery) {
+        List<Posting> queryPostings = new ArrayList<>();
+        Posting shortest = null;
+        for (int i = 0; i + GRAM_LENGTH <= foldedQuery.length(); i++) {
+            Posting posting = postings.get(foldedQuery.substring(i, i + GRAM_LENGTH));
+            if (posting == null) {
+                return Stream.empty();
+            }
+            queryPostings.add(posting);
+            if (shortest == null || posting.size < shortest.size) {
+                shortest = posting;
+            }
+        }
+
+        Posting walked = shortest;
+        return IntStream.range(0, walked.size)
+            .map(i -> walked.ids[i])
+            .filter(id -> containedInAll(id, queryPostings))
+            .mapToObj(booksById);
+    }
+
+    private static boolean containedInAll(int id, List<Posting> queryPostings) {
+        for (Posting posting : queryPostings) {
+            if (!posting.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The identifiers of the books containing one trigram, in ascending order.
+     */
+    private static final class Posting {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            int index = size > 0 && ids[size - 1] > id ? -Arrays.binarySearch(ids, 0, size, id) - 1 : size;
+            if (index < 0) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Book;
+import model.Reader;
+
+/**
+ * Encodes and decodes the snapshot files of the library in a compact, versioned binary format.
+ * <p>
+ * A file starts with a header (magic number, format version, content kind) followed by a string table that holds
+ * every distinct title, author and reader name once. Books and readers are then written as length-prefixed records
+ * of variable-length integers, so that later versions can append fields that older readers skip.
+ * A readers file contains a table of the borrowed books, and every loan refers to that table by id
+ * instead of embedding a copy of the book.
+ * <p>
+ * Decoding works directly on a heap {@link ByteBuffer} holding the whole file, as read by {@link SnapshotFiles}.
+ * Strings of the string table are only located when the table is read and are decoded the first time a record
+ * refers to them. Every book record refers to its title and author, so reading a books file decodes all of its
+ * strings while the catalog is built; only a readers file skips work, decoding just the reader names and the
+ * borrowed books that some loan refers to.
+ */
+final class BinaryCodec {
+    static final int MAGIC = 0x434C4942;
+    static final short VERSION = 1;
+    static final byte BOOKS = 1;
+    static final byte READERS = 2;
+
+    private BinaryCodec() {}
+
+    /**
+     * Writes the given books to the stream.
+     * @param books the books to write
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs while writing
+     */
+    static void writeBooks(Collection<Book> books, OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        for (Book book : books) {
+            strings.add(book.getTitle());
+            strings.add(book.getAuthor());
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, BOOKS);
+        strings.writeTo(data);
+        data.writeInt(books.size());
+        RecordWriter record = new RecordWriter();
+        for (Book book : books) {
+            record.writeVarInt(strings.idOf(book.getTitle()));
+            record.writeVarInt(strings.idOf(book.getAuthor()));
+            record.writeVarInt(book.getAvailableQuantity());
+            record.writeVarInt(book.getTotalQuantity());
+            record.flushTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the given readers, with their borrowed books, to the stream.
+     * @param readers the readers to write
+     * @param out the stream to write to
+     * @throws IOException if an I/O error occurs while writing
+     */
+    static void writeReaders(Collection<Reader> readers, OutputStream out) throws IOException {
+        StringTable strings = new StringTable();
+        Map<Book, Integer> bookIds = new IdentityHashMap<>();
+        List<Book> borrowedBooks = new ArrayList<>();
+        List<Reader> readerList = new ArrayList<>(readers);
+        List<List<Book>> loans = new ArrayList<>(readerList.size());
+        for (Reader reader : readerList) {
+            strings.add(reader.getName());
+            List<Book> loaned = reader.getBorrowedBooks();
+            loans.add(loaned);
+            for (Book book : loaned) {
+                if (bookIds.putIfAbsent(book, borrowedBooks.size()) == null) {
+                    borrowedBooks.add(book);
+                    strings.add(book.getTitle());
+                    strings.add(book.getAuthor());
+                }
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        writeHeader(data, READERS);
+        strings.writeTo(data);
+        data.writeInt(borrowedBooks.size());
+        RecordWriter record = new RecordWriter();
+        for (Book book : borrowedBooks) {
+            record.writeVarInt(strings.idOf(book.getTitle()));
+            record.writeVarInt(strings.idOf(book.getAuthor()));
+            record.flushTo(data);
+        }
+        data.writeInt(readerList.size());
+        for (int i = 0; i < readerList.size(); i++) {
+            List<Book> loaned = loans.get(i);
+            record.writeVarInt(strings.idOf(readerList.get(i).getName()));
+            record.writeVarInt(loaned.size());
+            for (Book book : loaned) {
+                record.writeVarInt(bookIds.get(book));
+            }
+            record.flushTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads books from a buffer holding a books file.
+     * @param buffer the buffer to read from, positioned at the start of the file
+     * @param pool the pool that canonicalizes the strings of the file
+     * @return the books, in the order they were written
+     * @throws IOException if the buffer does not hold a supported books file
+     */
+    static List<Book> readBooks(ByteBuffer buffer, StringPool pool) throws IOException {
+        readHeader(buffer, BOOKS);
+        StringTableView strings = new StringTableView(buffer, pool);
+        int count = buffer.getInt();
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int end = readVarInt(buffer) + buffer.position();
+            books.add(new Book(strings.get(readVarInt(buffer)), strings.get(readVarInt(buffer)), readVarInt(buffer), readVarInt(buffer)));
+            buffer.position(end);
+        }
+        return books;
+    }
+
+    /**
+     * Reads readers from a buffer holding a readers file.
+     * Borrowed books only carry a title and an author, and every loan of the same book shares one instance.
+     * @param buffer the buffer to read from, positioned at the start of the file
+     * @param pool the pool that canonicalizes the strings of the file
+     * @return the readers, in the order they were written
+     * @throws IOException if the buffer does not hold a supported readers file
+     */
+    static List<Reader> readReaders(ByteBuffer buffer, StringPool pool) throws IOException {
+        readHeader(buffer, READERS);
+        StringTableView strings = new StringTableView(buffer, pool);
+        int[] borrowedBookPositions = new int[buffer.getInt()];
+        for (int i = 0; i < borrowedBookPositions.length; i++) {
+            int length = readVarInt(buffer);
+            borrowedBookPositions[i] = buffer.position();
+            buffer.position(buffer.position() + length);
+        }
+        Book[] borrowedBooks = new Book[borrowedBookPositions.length];
+        int count = buffer.getInt();
+        List<Reader> readers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int end = readVarInt(buffer) + buffer.position();
+            Reader reader = new Reader(strings.get(readVarInt(buffer)));
+            int loans = readVarInt(buffer);
+            for (int j = 0; j < loans; j++) {
+                int bookId = readVarInt(buffer);
+                if (borrowedBooks[bookId] == null) {
+                    borrowedBooks[bookId] = readBorrowedBook(buffer.duplicate().position(borrowedBookPositions[bookId]), strings);
+                }
+                reader.restoreLoan(borrowedBooks[bookId]);
+            }
+            readers.add(reader);
+            buffer.position(end);
+        }
+        return readers;
+    }
+
+    private static Book readBorrowedBook(ByteBuffer record, StringTableView strings) {
+        return new Book(strings.get(readVarInt(record)), strings.get(readVarInt(record)), 0, 0);
+    }
+
+    private static void writeHeader(DataOutputStream data, byte kind) throws IOException {
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeByte(kind);
+    }
+
+    private static void readHeader(ByteBuffer buffer, byte kind) throws IOException {
+        if (buffer.remaining() < 7 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a library snapshot file");
+        }
+        short version = buffer.getShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        if (buffer.get() != kind) {
+            throw new IOException("Unexpected snapshot content");
+        }
+    }
+
+    static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * The string table of a file being read. Reading the table only records where each string starts;
+     * a string is decoded on its first access, canonicalized through the pool and cached for later references.
+     */
+    private static final class StringTableView {
+        private final ByteBuffer buffer;
+        private final StringPool pool;
+        private final int[] positions;
+        private final String[] decoded;
+
+        StringTableView(ByteBuffer buffer, StringPool pool) {
+            this.buffer = buffer.duplicate();
+            this.pool = pool;
+            this.positions = new int[buffer.getInt()];
+            this.decoded = new String[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = buffer.position();
+                int length = readVarInt(buffer);
+                buffer.position(buffer.position() + length);
+            }
+        }
+
+        String get(int id) {
+            String value = decoded[id];
+            if (value == null) {
+                buffer.position(positions[id]);
+                int length = readVarInt(buffer);
+                if (buffer.hasArray()) {
+                    value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                } else {
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+                }
+                value = pool.canonical(value);
+                decoded[id] = value;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Assigns ids to distinct strings in the order they are first added.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new LinkedHashMap<>();
+
+        void add(String value) {
+            ids.putIfAbsent(value, ids.size());
+        }
+
+        int idOf(String value) {
+            return ids.get(value);
+        }
+
+        void writeTo(DataOutputStream data) throws IOException {
+            data.writeInt(ids.size());
+            for (String value : ids.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(data, bytes.length);
+                data.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Collects the fields of one record so that it can be written with its length in front.
+     */
+    private static final class RecordWriter {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+
+        void writeVarInt(int value) throws IOException {
+            BinaryCodec.writeVarInt(buffer, value);
+        }
+
+        void flushTo(DataOutputStream data) throws IOException {
+            BinaryCodec.writeVarInt(data, buffer.size());
+            buffer.writeTo(data);
+            buffer.reset();
+        }
+    }
+}
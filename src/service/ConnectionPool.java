@@ -0,0 +1,421 @@
+package service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small pool of JDBC connections obtained through {@link DriverManager}.
+ * <p>
+ * The pool never holds more than its maximum number of connections. A caller that finds all of them in use waits
+ * up to the acquire timeout for one to be returned. Idle connections are validated before they are handed out, and
+ * connections that stayed idle longer than the idle timeout are closed by a background thread, as long as the pool
+ * keeps its minimum size. Connections handed out by the pool return to it when they are closed.
+ * Because connections are created through {@link DriverManager}, any registered JDBC driver can back the pool.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final Properties info;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutNanos;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and opens its minimum number of connections.
+     * @param url the JDBC URL of the database
+     * @param user the database user
+     * @param password the password of the database user
+     * @param minSize the number of connections kept open even when idle
+     * @param maxSize the maximum number of open connections
+     * @param acquireTimeoutMillis how long a caller waits for a connection before giving up
+     * @param idleTimeoutMillis how long a connection may stay idle before it is closed
+     * @throws SQLException if the initial connections cannot be opened
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long acquireTimeoutMillis, long idleTimeoutMillis) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+        }
+        this.url = url;
+        this.info = new Properties();
+        if (user != null) {
+            info.setProperty("user", user);
+        }
+        if (password != null) {
+            info.setProperty("password", password);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.permits = new Semaphore(maxSize, true);
+
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection gives it back to the pool.
+     * @return a valid connection
+     * @throws SQLTransientConnectionException if no connection becomes available within the acquire timeout
+     * @throws SQLException if the pool is closed or a new connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + acquireTimeoutMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        try {
+            Connection connection = takeValidIdleConnection();
+            if (connection == null) {
+                connection = open();
+            }
+            acquired.incrementAndGet();
+            return lease(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeValidIdleConnection() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (isValid(candidate.connection)) {
+                return candidate.connection;
+            }
+            validationFailures.incrementAndGet();
+            destroy(candidate.connection);
+        }
+        return null;
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, info);
+        size.incrementAndGet();
+        created.incrementAndGet();
+        return connection;
+    }
+
+    private void destroy(Connection connection) {
+        size.decrementAndGet();
+        destroyed.incrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // The connection is discarded either way.
+        }
+    }
+
+    private void fillToMinimum() throws SQLException {
+        while (!closed && size.get() < minSize) {
+            offerIdle(open());
+        }
+    }
+
+    /**
+     * Puts a connection back into the idle deque. If the pool was closed meanwhile, {@link #close()} may already
+     * have drained the deque, so the connection is taken out again and closed unless the drain got it first.
+     */
+    private void offerIdle(Connection connection) {
+        IdleConnection entry = new IdleConnection(connection);
+        idle.offerFirst(entry);
+        if (closed && idle.removeFirstOccurrence(entry)) {
+            destroy(connection);
+        }
+    }
+
+    /**
+     * Takes a connection back from a caller. Connections left in a transaction are rolled back,
+     * and connections that fail to reset are discarded.
+     */
+    private void release(Connection connection) {
+        try {
+            if (closed) {
+                destroy(connection);
+                return;
+            }
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                offerIdle(connection);
+            } catch (SQLException e) {
+                destroy(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && size.get() > minSize) {
+            IdleConnection candidate = oldestFirst.next();
+            if (now - candidate.idleSince >= idleTimeoutNanos && idle.removeFirstOccurrence(candidate)) {
+                destroy(candidate.connection);
+            }
+        }
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            // The next borrow opens a connection on demand.
+        }
+    }
+
+    private Connection lease(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new LeasedConnection(connection));
+    }
+
+    /**
+     * Returns a snapshot of the pool statistics.
+     * @return the current statistics
+     */
+    public Statistics getStatistics() {
+        int idleCount = idle.size();
+        int total = size.get();
+        return new Statistics(total, idleCount, Math.max(0, total - idleCount), waiting.get(),
+                created.get(), destroyed.get(), acquired.get(), timeouts.get(), validationFailures.get());
+    }
+
+    /**
+     * Closes the pool. Idle connections are closed immediately, connections in use when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            destroy(candidate.connection);
+        }
+    }
+
+    /**
+     * A connection waiting in the pool, with the time it was returned.
+     */
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long idleSince = System.nanoTime();
+
+        IdleConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Forwards calls to a pooled connection until it is closed, and returns it to the pool on close.
+     */
+    private final class LeasedConnection implements InvocationHandler {
+        private Connection connection;
+
+        LeasedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (connection != null) {
+                        Connection returned = connection;
+                        connection = null;
+                        release(returned);
+                    }
+                    return null;
+                case "isClosed":
+                    return connection == null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection;
+                default:
+                    if (connection == null) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * A snapshot of the state and counters of a connection pool.
+     */
+    public static final class Statistics {
+        private final int total;
+        private final int idle;
+        private final int active;
+        private final int waiting;
+        private final long created;
+        private final long destroyed;
+        private final long acquired;
+        private final long timeouts;
+        private final long validationFailures;
+
+        Statistics(int total, int idle, int active, int waiting, long created, long destroyed,
+                long acquired, long timeouts, long validationFailures) {
+            this.total = total;
+            this.idle = idle;
+            this.active = active;
+            this.waiting = waiting;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.acquired = acquired;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+        }
+
+        /**
+         * Returns the number of open connections.
+         * @return the number of open connections
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the number of connections waiting in the pool.
+         * @return the number of connections waiting in the pool
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * Returns the number of connections in use.
+         * @return the number of connections in use
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * Returns the number of callers waiting for a connection.
+         * @return the number of callers waiting for a connection
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * Returns the number of connections opened so far.
+         * @return the number of connections opened so far
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Returns the number of connections closed so far.
+         * @return the number of connections closed so far
+         */
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        /**
+         * Returns the number of successful borrows so far.
+         * @return the number of successful borrows so far
+         */
+        public long getAcquired() {
+            return acquired;
+        }
+
+        /**
+         * Returns the number of borrows that timed out so far.
+         * @return the number of borrows that timed out so far
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Returns the number of idle connections discarded because they failed validation.
+         * @return the number of idle connections discarded because they failed validation
+         */
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        @Override
+        public String toString() {
+            return "total=" + total + ", idle=" + idle + ", active=" + active + ", waiting=" + waiting
+                    + ", created=" + created + ", destroyed=" + destroyed + ", acquired=" + acquired
+                    + ", timeouts=" + timeouts + ", validationFailures=" + validationFailures;
+        }
+    }
+}
@@ -2,99 +2,232 @@ package service;
 
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 import model.Book;
 import model.Reader;
+import model.ReaderRegistry;
 
+/**
+ * This class provides a MySQL-based implementation of the Persistency interface.
+ * Every operation borrows a connection from a {@link ConnectionPool} and returns it when done.
+ * <p>
+ * Saving books reads their quantities and commits them while holding a lock for every saved book, striped by title
+ * and author. Two threads saving the same book therefore commit in the order in which they read it, and the row
+ * never goes back to an older quantity. The stripes are locked in ascending order, so batches cannot deadlock.
+ */
 public class DBPersistency implements Persistency {
+    private static final String URL = "jdbc:mysql://localhost:3306/citylibrary"
+            + "?useCursorFetch=true&rewriteBatchedStatements=true&cachePrepStmts=true";
+    private static final int FETCH_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int BOOK_LOCK_STRIPES = 64;
+    private static final String LOAD_READERS_QUERY =
+            "SELECT r.name, b.title, b.author FROM Readers r LEFT JOIN BorrowedBooks b ON b.name = r.name";
+    private static final String SAVE_BOOK_QUERY =
+            "INSERT INTO Books (title, author, availableQuantity, totalQuantity) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "availableQuantity = VALUES(availableQuantity), " +
+            "totalQuantity = VALUES(totalQuantity)";
+    private static final String FINGERPRINT_QUERY =
+            "SELECT COUNT(*), COALESCE(SUM(CRC32(CONCAT_WS(CHAR(0), title, author, availableQuantity, totalQuantity))), 0) " +
+            "FROM Books";
+    private static final String SAVE_READER_QUERY =
+            "INSERT INTO Readers (name) SELECT ? FROM dual WHERE NOT EXISTS (SELECT * FROM Readers WHERE name = ?)";
 
-    private Connection connection;
+    private final ConnectionPool pool;
+    private final StringPool strings = new StringPool();
+    private final int batchSize;
+    private final ReentrantLock[] bookLocks = new ReentrantLock[BOOK_LOCK_STRIPES];
 
     public DBPersistency() throws SQLException {
-        this.connection = DriverManager.getConnection("jdbc:mysql://localhost:3306/citylibrary", System.getenv("DB_USERNAME"), System.getenv("DB_PASSWORD"));
+        this(new Properties());
+    }
+
+    /**
+     * Creates a database persistency configured by the given properties. The credentials are read from the
+     * DB_USERNAME and DB_PASSWORD environment variables. Recognized properties, all optional:
+     * <ul>
+     * <li>{@code db.url} - the JDBC URL, by default the local MySQL database</li>
+     * <li>{@code db.batchSize} - the number of rows sent per batch when saving</li>
+     * <li>{@code db.pool.minSize} and {@code db.pool.maxSize} - the bounds of the connection pool</li>
+     * <li>{@code db.pool.acquireTimeoutMillis} - how long an operation waits for a free connection</li>
+     * <li>{@code db.pool.idleTimeoutMillis} - how long a connection may stay unused before it is closed</li>
+     * </ul>
+     * @param config the configuration properties
+     * @throws SQLException if the initial connections cannot be established
+     */
+    public DBPersistency(Properties config) throws SQLException {
+        this(new ConnectionPool(
+                config.getProperty("db.url", URL),
+                System.getenv("DB_USERNAME"),
+                System.getenv("DB_PASSWORD"),
+                Integer.parseInt(config.getProperty("db.pool.minSize", "1")),
+                Integer.parseInt(config.getProperty("db.pool.maxSize", "8")),
+                Long.parseLong(config.getProperty("db.pool.acquireTimeoutMillis", "5000")),
+                Long.parseLong(config.getProperty("db.pool.idleTimeoutMillis", "300000"))),
+            Integer.parseInt(config.getProperty("db.batchSize", String.valueOf(DEFAULT_BATCH_SIZE))));
+    }
+
+    /**
+     * Creates a database persistency that uses connections from the given pool.
+     * @param pool the pool to borrow connections from; it is closed together with the persistency
+     * @param batchSize the number of rows sent per batch when saving
+     */
+    public DBPersistency(ConnectionPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+        for (int i = 0; i < bookLocks.length; i++) {
+            bookLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the statistics of the connection pool.
+     * @return a snapshot of the pool statistics
+     */
+    public ConnectionPool.Statistics getPoolStatistics() {
+        return pool.getStatistics();
     }
 
     @Override
     public List<Book> loadBooks() throws SQLException {
         List<Book> books = new ArrayList<>();
-        ResultSet resultSet = connection.createStatement().executeQuery("SELECT * FROM Books");
-        while (resultSet.next()) {
-            books.add(new Book(
-                    resultSet.getString("title"),
-                    resultSet.getString("author"),
-                    resultSet.getInt("availableQuantity"),
-                    resultSet.getInt("totalQuantity")
-            ));
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery("SELECT title, author, availableQuantity, totalQuantity FROM Books")) {
+                while (resultSet.next()) {
+                    books.add(new Book(
+                            strings.canonical(resultSet.getString("title")),
+                            strings.canonical(resultSet.getString("author")),
+                            resultSet.getInt("availableQuantity"),
+                            resultSet.getInt("totalQuantity")
+                    ));
+                }
+            }
         }
         return books;
     }
 
+    /**
+     * Loads all readers with their borrowed books in a single query.
+     * The join returns one row per loan, or a single row with empty book columns for a reader without loans;
+     * the rows are grouped by reader name as they are streamed in.
+     */
     @Override
-    public List<Reader> loadReaders() throws SQLException {
-        List<Reader> readers = new ArrayList<>();
-        ResultSet resultSet = connection.createStatement().executeQuery("SELECT * FROM Readers");
-        while (resultSet.next()) {
-            String name = resultSet.getString("name");
-            ResultSet borrowedBooksResultSet = dealWithBorrowedBooks(name);
-            
-            List<Book> borrowedBooks = new ArrayList<>();
-            while(borrowedBooksResultSet.next()) {
-                borrowedBooks.add(new Book(
-                        borrowedBooksResultSet.getString("title"),
-                        borrowedBooksResultSet.getString("author"),
-                        0, 0
-                ));
+    public ReaderRegistry loadReaders() throws SQLException {
+        Map<String, Reader> readersByName = new LinkedHashMap<>();
+        LoanPlaceholders loanedBooks = new LoanPlaceholders(strings);
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(LOAD_READERS_QUERY)) {
+                while (resultSet.next()) {
+                    Reader reader = readersByName.computeIfAbsent(resultSet.getString("name"),
+                            name -> new Reader(strings.canonical(name)));
+                    String title = resultSet.getString("title");
+                    if (title != null) {
+                        reader.restoreLoan(loanedBooks.get(title, resultSet.getString("author")));
+                    }
+                }
             }
-
-            Reader reader = new Reader(name);
-            for (Book book : borrowedBooks) {
-                reader.borrowBook(book);
-            }
-            readers.add(reader);
         }
-        return readers;
-    }
 
-    private ResultSet dealWithBorrowedBooks(String name) throws SQLException {
-        PreparedStatement ps = connection.prepareStatement("SELECT title, author FROM BorrowedBooks WHERE name = ?");
-        ps.setString(1, name);
-        return ps.executeQuery();
+        strings.release();
+        ReaderRegistry readers = new ReaderRegistry();
+        readersByName.values().forEach(readers::register);
+        return readers;
     }
 
     @Override
     public void saveBooks(List<Book> books) throws IOException, SQLException {
+        BitSet stripes = new BitSet(BOOK_LOCK_STRIPES);
         for (Book book : books) {
-            String query = "INSERT INTO Books (title, author, availableQuantity, totalQuantity) " +
-                        "VALUES (?, ?, ?, ?) " +
-                        "ON DUPLICATE KEY UPDATE " +
-                        "availableQuantity = availableQuantity + VALUES(availableQuantity), " +
-                        "totalQuantity = totalQuantity + VALUES(totalQuantity)";
-            try (PreparedStatement ps = connection.prepareStatement(query)) {
+            stripes.set(Math.floorMod(Objects.hash(book.getTitle(), book.getAuthor()), BOOK_LOCK_STRIPES));
+        }
+        for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+            bookLocks[stripe].lock();
+        }
+        try {
+            saveInBatches(SAVE_BOOK_QUERY, books, (ps, book) -> {
                 ps.setString(1, book.getTitle());
                 ps.setString(2, book.getAuthor());
                 ps.setInt(3, book.getAvailableQuantity());
                 ps.setInt(4, book.getTotalQuantity());
-                ps.executeUpdate();
+            });
+        } finally {
+            for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+                bookLocks[stripe].unlock();
             }
         }
     }
 
     @Override
     public void saveReaders(List<Reader> readers) throws IOException, SQLException {
-        for (Reader reader : readers) {
-            String insertReaderQuery = "INSERT INTO Readers (name) SELECT ? FROM dual WHERE NOT EXISTS (SELECT * FROM Readers WHERE name = ?)";
-            PreparedStatement updateReaderPs = connection.prepareStatement(insertReaderQuery);
-            
-            updateReaderPs.setString(1, reader.getName());
-            updateReaderPs.setString(2, reader.getName());
-            updateReaderPs.executeUpdate();
+        saveInBatches(SAVE_READER_QUERY, readers, (ps, reader) -> {
+            ps.setString(1, reader.getName());
+            ps.setString(2, reader.getName());
+        });
+    }
+
+    /**
+     * Binds the parameters of a prepared statement for one row.
+     */
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    /**
+     * Executes a statement for every row within a single transaction.
+     * The statement is prepared once, and the rows are sent with {@link PreparedStatement#executeBatch()} in chunks
+     * of the configured batch size. If any chunk fails, the whole transaction is rolled back.
+     */
+    private <T> void saveInBatches(String query, List<T> rows, RowBinder<T> binder) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
         }
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(query)) {
+                int pending = 0;
+                for (T row : rows) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                    if (++pending == batchSize) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
     }
 
     @Override
@@ -102,10 +235,27 @@ public class DBPersistency implements Persistency {
         return "DB";
     }
 
+    /**
+     * Returns the number of books and the sum of a checksum of every book row, which changes with any change
+     * to a title, author or quantity.
+     */
     @Override
-    public void close() throws SQLException {
-        if (connection != null) {
-            connection.close();
+    public String getFingerprint() throws SQLException {
+        try (Connection connection = pool.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(FINGERPRINT_QUERY)) {
+            resultSet.next();
+            return getType() + ":" + resultSet.getLong(1) + ":" + resultSet.getLong(2);
         }
     }
+
+    @Override
+    public StringPool getStringPool() {
+        return strings;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        pool.close();
+    }
 }
\ No newline at end of file
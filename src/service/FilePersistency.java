@@ -1,71 +1,223 @@
 package service;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import model.Book;
 import model.Reader;
+import model.ReaderRegistry;
 
 /**
  * This class provides file-based implementation of the Persistency interface.
  * It allows saving and loading data to and from a file.
+ * Books and readers are stored in the binary format of {@link BinaryCodec};
+ * files written with Java serialization by earlier versions are migrated on the first load.
+ * In journal mode, saves append the changed books and readers to a journal instead of rewriting the files,
+ * and loading replays the journal on top of the last saved files.
  */
 public class FilePersistency implements Persistency {
+    private static final String BOOKS_FILENAME = "books.dat";
+    private static final String READERS_FILENAME = "readers.dat";
+    private static final String LEGACY_BOOKS_FILENAME = "books.txt";
+    private static final String LEGACY_READERS_FILENAME = "readers.txt";
+    private static final String JOURNAL_FILENAME = "library.journal";
+
+    private final String booksFilename;
+    private final String readersFilename;
+    private final String legacyBooksFilename;
+    private final String legacyReadersFilename;
+    private final String journalFilename;
+    private final Journal journal;
+    private final StringPool strings = new StringPool();
+    private JournalState loadedJournal;
+    private SnapshotCompactor compactor;
+    private volatile boolean loaded;
+
+    /**
+     * Creates a file persistency that rewrites the data files on every save.
+     */
+    public FilePersistency() {
+        this(false);
+    }
+
+    /**
+     * Creates a file persistency.
+     * @param journaled true to append changes to a journal instead of rewriting the data files on every save
+     */
+    public FilePersistency(boolean journaled) {
+        this(Paths.get(""), journaled);
+    }
 
     /**
-     * Saves the given list of objects to the specified file.
-     *
-     * @param list     the list of objects to save
-     * @param filename the name of the file to save to
-     * @throws IOException if an I/O error occurs while saving the data
+     * Creates a file persistency that keeps its files in the given directory.
+     * @param directory the directory that holds the data files and the journal
+     * @param journaled true to append changes to a journal instead of rewriting the data files on every save
      */
-    private void saveData(List<?> list, String filename) throws IOException {
-        FileOutputStream fileOut = new FileOutputStream(filename);
-        ObjectOutputStream out = new ObjectOutputStream(fileOut);
-        out.writeObject(list);
-        out.close();
-        fileOut.close();
+    public FilePersistency(Path directory, boolean journaled) {
+        this.booksFilename = directory.resolve(BOOKS_FILENAME).toString();
+        this.readersFilename = directory.resolve(READERS_FILENAME).toString();
+        this.legacyBooksFilename = directory.resolve(LEGACY_BOOKS_FILENAME).toString();
+        this.legacyReadersFilename = directory.resolve(LEGACY_READERS_FILENAME).toString();
+        this.journalFilename = directory.resolve(JOURNAL_FILENAME).toString();
+        this.journal = journaled ? new Journal(journalFilename) : null;
+    }
+
+    /**
+     * Starts compacting the journal into the data files in the background.
+     * A compaction runs once any of the given limits is reached; it never runs before the data has been loaded.
+     * @param maxJournalBytes the journal size in bytes that triggers a compaction
+     * @param maxJournalRecords the number of journal records that triggers a compaction
+     * @param intervalSeconds the time after which a non-empty journal is compacted regardless of its size
+     * @throws IllegalStateException if the persistency is not in journal mode
+     */
+    public synchronized void startCompaction(long maxJournalBytes, long maxJournalRecords, long intervalSeconds) {
+        if (journal == null) {
+            throw new IllegalStateException("Compaction requires journal mode");
+        }
+        if (compactor == null) {
+            compactor = new SnapshotCompactor(this, maxJournalBytes, maxJournalRecords, intervalSeconds);
+            compactor.start();
+        }
     }
 
     @Override
     public void saveBooks(List<Book> books) throws IOException, SQLException {
-        saveData(books, "books.txt");
+        if (journal == null) {
+            SnapshotFiles.write(booksFilename, out -> BinaryCodec.writeBooks(books, out));
+            return;
+        }
+        for (Book book : books) {
+            journal.appendBook(book);
+        }
     }
 
     @Override
     public void saveReaders(List<Reader> readers) throws IOException, SQLException {
-        saveData(readers, "readers.txt");
+        if (journal == null) {
+            SnapshotFiles.write(readersFilename, out -> BinaryCodec.writeReaders(readers, out));
+            return;
+        }
+        for (Reader reader : readers) {
+            journal.appendReader(reader);
+        }
     }
 
-    private <T> List<T> loadData(String filename, Class<T> typeClass) throws IOException, ClassNotFoundException {
-        FileInputStream fileIn = new FileInputStream(filename);
-        ObjectInputStream in = new ObjectInputStream(fileIn);
-        List<?> data = (List<?>) in.readObject();
-        List<T> result = new ArrayList<>(data.size());
-        for (Object item : data) {
-            if (typeClass.isInstance(item)) {
-                result.add(typeClass.cast(item));
+    private List<Book> loadBooksSnapshot(StringPool pool) throws IOException, ClassNotFoundException {
+        SnapshotMigrator.migrateBooks(legacyBooksFilename, booksFilename);
+        try {
+            return BinaryCodec.readBooks(SnapshotFiles.read(booksFilename), pool);
+        } catch (FileNotFoundException e) {
+            if (journal == null) {
+                throw e;
             }
+            return new ArrayList<>();
         }
-        in.close();
-        fileIn.close();
-        return result;
     }
-    
+
+    private List<Reader> loadReadersSnapshot(StringPool pool) throws IOException, ClassNotFoundException {
+        SnapshotMigrator.migrateReaders(legacyReadersFilename, readersFilename);
+        try {
+            return BinaryCodec.readReaders(SnapshotFiles.read(readersFilename), pool);
+        } catch (FileNotFoundException e) {
+            if (journal == null) {
+                throw e;
+            }
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public List<Book> loadBooks() throws IOException, ClassNotFoundException, SQLException {
-        return loadData("books.txt", Book.class);
+        List<Book> books = loadBooksSnapshot(strings);
+        if (journal == null) {
+            return books;
+        }
+        if (loadedJournal == null) {
+            loadedJournal = readJournal(Long.MAX_VALUE, strings);
+        }
+        return loadedJournal.applyToBooks(books);
     }
     
     @Override
-    public List<Reader> loadReaders() throws IOException, ClassNotFoundException, SQLException {
-        return loadData("readers.txt", Reader.class);
+    public ReaderRegistry loadReaders() throws IOException, ClassNotFoundException, SQLException {
+        List<Reader> snapshot = loadReadersSnapshot(strings);
+        ReaderRegistry readers = new ReaderRegistry();
+        if (journal == null) {
+            strings.release();
+            snapshot.forEach(readers::register);
+            return readers;
+        }
+        if (loadedJournal == null) {
+            loadedJournal = readJournal(Long.MAX_VALUE, strings);
+        }
+        loadedJournal.applyToReaders(snapshot).forEach(readers::register);
+        loadedJournal = null;
+        strings.release();
+        loaded = true;
+        return readers;
+    }
+
+    private JournalState readJournal(long limit, StringPool pool) throws IOException {
+        JournalState state = new JournalState();
+        journal.replay(
+            book -> state.books.put(keyOf(book), book),
+            reader -> state.readers.put(reader.getName(), reader),
+            limit,
+            pool);
+        return state;
+    }
+
+    private static String keyOf(Book book) {
+        return book.getTitle() + '\u0000' + book.getAuthor();
+    }
+
+    /**
+     * Returns true once the data has been loaded and the journal holds records that are not part of the data files.
+     */
+    boolean canCompact() throws IOException {
+        return loaded && journal.recordCount() > 0;
+    }
+
+    long journalSize() throws IOException {
+        return journal.size();
+    }
+
+    long journalRecordCount() throws IOException {
+        return journal.recordCount();
+    }
+
+    /**
+     * Merges the journal into new data files and drops the merged records from the journal.
+     * The data files are replaced one after the other and the journal is cut afterwards; since replaying a record
+     * a second time has no effect, a crash at any point in between still loads the same data.
+     * Records appended while the compaction runs are kept in the journal.
+     * The strings read here are shared through a pool of their own, so they do not count towards the statistics
+     * of the pool used for loading.
+     * @throws IOException if an I/O error occurs while reading or writing the files
+     * @throws ClassNotFoundException if a legacy file has to be migrated and contains unknown classes
+     */
+    void compact() throws IOException, ClassNotFoundException {
+        long end = journal.size();
+        StringPool compactionStrings = new StringPool();
+        JournalState state = readJournal(end, compactionStrings);
+        List<Book> books = state.applyToBooks(loadBooksSnapshot(compactionStrings));
+        List<Reader> readers = state.applyToReaders(loadReadersSnapshot(compactionStrings));
+        SnapshotFiles.write(booksFilename, out -> BinaryCodec.writeBooks(books, out));
+        SnapshotFiles.write(readersFilename, out -> BinaryCodec.writeReaders(readers, out));
+        journal.discardBefore(end);
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return journal != null;
     }
 
     @Override
@@ -73,6 +225,75 @@ public class FilePersistency implements Persistency {
         return "File";
     }
 
+    /**
+     * Returns the mode and the size and modification time of the books file and, in journal mode, of the journal.
+     */
+    @Override
+    public String getFingerprint() throws IOException {
+        StringBuilder fingerprint = new StringBuilder(getType()).append(journal == null ? ":snapshot" : ":journal");
+        appendFileState(fingerprint, booksFilename);
+        if (journal != null) {
+            appendFileState(fingerprint, journalFilename);
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendFileState(StringBuilder fingerprint, String filename) throws IOException {
+        Path path = Paths.get(filename);
+        fingerprint.append(':');
+        if (Files.exists(path)) {
+            fingerprint.append(Files.size(path)).append('@').append(Files.getLastModifiedTime(path).toMillis());
+        } else {
+            fingerprint.append('-');
+        }
+    }
+
     @Override
-    public void close() {}
-}
\ No newline at end of file
+    public StringPool getStringPool() {
+        return strings;
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.close();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The latest recorded state of every book and reader in the journal.
+     */
+    private static final class JournalState {
+        private final Map<String, Book> books = new LinkedHashMap<>();
+        private final Map<String, Reader> readers = new LinkedHashMap<>();
+
+        List<Book> applyToBooks(List<Book> snapshot) {
+            Map<String, Book> merged = new LinkedHashMap<>();
+            snapshot.forEach(book -> merged.put(keyOf(book), book));
+            books.forEach((key, journaledBook) -> {
+                Book book = merged.get(key);
+                if (book == null) {
+                    merged.put(key, journaledBook);
+                } else {
+                    book.setAvailableQuantity(journaledBook.getAvailableQuantity());
+                    book.setTotalQuantity(journaledBook.getTotalQuantity());
+                }
+            });
+            return new ArrayList<>(merged.values());
+        }
+
+        List<Reader> applyToReaders(List<Reader> snapshot) {
+            Map<String, Reader> merged = new LinkedHashMap<>();
+            snapshot.forEach(reader -> merged.put(reader.getName(), reader));
+            merged.putAll(readers);
+            return new ArrayList<>(merged.values());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import model.Book;
+import model.Reader;
+import model.ReaderRegistry;
+
+/**
+ * A persistency that records the latency and failures of every call to another persistency.
+ * The recorders are published over JMX as {@code city-library:type=Persistency,name=<method>},
+ * and the string pool of the persistency, if it has one, as {@code city-library:type=Persistency,name=stringPool}.
+ */
+public class InstrumentedPersistency implements Persistency {
+    private final Persistency delegate;
+    private final LatencyRecorder saveBooks = new LatencyRecorder();
+    private final LatencyRecorder saveReaders = new LatencyRecorder();
+    private final LatencyRecorder loadBooks = new LatencyRecorder();
+    private final LatencyRecorder loadReaders = new LatencyRecorder();
+    private final LatencyRecorder flush = new LatencyRecorder();
+
+    /**
+     * Creates an instrumented persistency and publishes its recorders and the delegate's string pool.
+     * @param delegate the persistency whose calls are measured
+     */
+    public InstrumentedPersistency(Persistency delegate) {
+        this.delegate = delegate;
+        Metrics.register("Persistency", "saveBooks", saveBooks);
+        Metrics.register("Persistency", "saveReaders", saveReaders);
+        Metrics.register("Persistency", "loadBooks", loadBooks);
+        Metrics.register("Persistency", "loadReaders", loadReaders);
+        Metrics.register("Persistency", "flush", flush);
+        StringPool strings = delegate.getStringPool();
+        if (strings != null) {
+            Metrics.register("Persistency", "stringPool", strings);
+        }
+    }
+
+    @Override
+    public void saveBooks(List<Book> books) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            delegate.saveBooks(books);
+            succeeded = true;
+        } finally {
+            saveBooks.recordSince(start, succeeded);
+        }
+    }
+
+    @Override
+    public void saveReaders(List<Reader> readers) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            delegate.saveReaders(readers);
+            succeeded = true;
+        } finally {
+            saveReaders.recordSince(start, succeeded);
+        }
+    }
+
+    @Override
+    public List<Book> loadBooks() throws IOException, ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<Book> books = delegate.loadBooks();
+            succeeded = true;
+            return books;
+        } finally {
+            loadBooks.recordSince(start, succeeded);
+        }
+    }
+
+    @Override
+    public ReaderRegistry loadReaders() throws IOException, ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ReaderRegistry readers = delegate.loadReaders();
+            succeeded = true;
+            return readers;
+        } finally {
+            loadReaders.recordSince(start, succeeded);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            delegate.flush();
+            succeeded = true;
+        } finally {
+            flush.recordSince(start, succeeded);
+        }
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return delegate.isIncremental();
+    }
+
+    @Override
+    public String getType() {
+        return delegate.getType();
+    }
+
+    @Override
+    public String getFingerprint() throws IOException, SQLException {
+        return delegate.getFingerprint();
+    }
+
+    @Override
+    public StringPool getStringPool() {
+        return delegate.getStringPool();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,257 @@
+package service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import model.Book;
+import model.Reader;
+
+/**
+ * An append-only log of book and reader changes, replayed on top of the last snapshot at startup.
+ * Every record holds the full state of one book or reader, so replaying a record twice has no further effect.
+ * Records are written as their length, a CRC32 checksum and the payload; a record torn by a crash is detected on replay
+ * and cut off together with anything after it.
+ * Appends, size queries and {@link #discardBefore(long)} are synchronized, so the journal can be compacted
+ * by a background thread while changes are being appended.
+ * <p>
+ * A book or reader is read and its record appended while holding the lock of that book or reader. Two threads
+ * saving the same book therefore append in the order in which they read it, and the last record always holds
+ * a state at least as recent as every change saved before it.
+ */
+class Journal implements Closeable {
+    private static final byte BOOK_RECORD = 1;
+    private static final byte READER_RECORD = 2;
+    private static final int HEADER_LENGTH = 8;
+
+    private final String filename;
+    private RandomAccessFile file;
+    private long recordCount;
+
+    /**
+     * Creates a journal backed by the given file. The file is created on the first append.
+     * @param filename the name of the journal file
+     */
+    Journal(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Appends the current state of a book to the journal.
+     * @param book the book that changed
+     * @throws IOException if an I/O error occurs while writing the record
+     */
+    void appendBook(Book book) throws IOException {
+        synchronized (book) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(buffer);
+            record.writeByte(BOOK_RECORD);
+            record.writeUTF(book.getTitle());
+            record.writeUTF(book.getAuthor());
+            record.writeInt(book.getAvailableQuantity());
+            record.writeInt(book.getTotalQuantity());
+            append(buffer.toByteArray());
+        }
+    }
+
+    /**
+     * Appends the current state of a reader, including its borrowed books, to the journal.
+     * @param reader the reader that changed
+     * @throws IOException if an I/O error occurs while writing the record
+     */
+    void appendReader(Reader reader) throws IOException {
+        synchronized (reader) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(buffer);
+            record.writeByte(READER_RECORD);
+            record.writeUTF(reader.getName());
+            List<Book> borrowedBooks = reader.getBorrowedBooks();
+            record.writeInt(borrowedBooks.size());
+            for (Book book : borrowedBooks) {
+                record.writeUTF(book.getTitle());
+                record.writeUTF(book.getAuthor());
+            }
+            append(buffer.toByteArray());
+        }
+    }
+
+    private synchronized void append(byte[] payload) throws IOException {
+        RandomAccessFile journal = open();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(HEADER_LENGTH + payload.length);
+        DataOutputStream record = new DataOutputStream(buffer);
+        record.writeInt(payload.length);
+        record.writeInt((int) crc.getValue());
+        record.write(payload);
+        journal.write(buffer.toByteArray());
+        recordCount++;
+    }
+
+    private RandomAccessFile open() throws IOException {
+        if (file == null) {
+            RandomAccessFile journal = new RandomAccessFile(filename, "rw");
+            Scan scan = new Scan(null, null, null);
+            scan.run(journal, Long.MAX_VALUE);
+            journal.setLength(scan.validLength);
+            journal.seek(journal.length());
+            recordCount = scan.records;
+            file = journal;
+        }
+        return file;
+    }
+
+    /**
+     * Returns the length of the intact part of the journal.
+     * @return the journal size in bytes
+     * @throws IOException if an I/O error occurs while opening the journal
+     */
+    synchronized long size() throws IOException {
+        return open().length();
+    }
+
+    /**
+     * Returns the number of records in the journal.
+     * @return the number of records
+     * @throws IOException if an I/O error occurs while opening the journal
+     */
+    synchronized long recordCount() throws IOException {
+        open();
+        return recordCount;
+    }
+
+    /**
+     * Drops the records before the given offset, keeping the ones appended after it.
+     * The remaining records are copied to a new file that atomically replaces the journal.
+     * @param offset the offset of the first record to keep, as returned by {@link #size()} earlier
+     * @throws IOException if an I/O error occurs while rewriting the journal
+     */
+    synchronized void discardBefore(long offset) throws IOException {
+        RandomAccessFile journal = open();
+        byte[] tail = new byte[(int) (journal.length() - offset)];
+        journal.seek(offset);
+        journal.readFully(tail);
+        Path target = Paths.get(filename);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (RandomAccessFile rest = new RandomAccessFile(temp.toFile(), "rw")) {
+            rest.setLength(0);
+            rest.write(tail);
+            rest.getFD().sync();
+        }
+        close();
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    /**
+     * Replays the journal, passing every recorded book and reader to the given consumers in the order they were written.
+     * Borrowed books of replayed readers only carry a title and an author; readers who borrowed the same book
+     * share one placeholder object. Titles, authors and reader names are canonicalized through the given pool.
+     * @param onBook the consumer of book records
+     * @param onReader the consumer of reader records
+     * @param limit the offset at which to stop, or {@link Long#MAX_VALUE} to replay the whole journal
+     * @param strings the pool that canonicalizes the replayed titles, authors and reader names
+     * @throws IOException if an I/O error occurs while reading the journal
+     */
+    void replay(Consumer<Book> onBook, Consumer<Reader> onReader, long limit, StringPool strings) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(filename, "r")) {
+            new Scan(onBook, onReader, strings).run(journal, limit);
+        } catch (FileNotFoundException e) {
+            // Nothing has been journaled yet.
+        }
+    }
+
+    /**
+     * Reads records from the start of a journal file until the limit, its end or the first incomplete or corrupt record.
+     */
+    private static final class Scan {
+        private final Consumer<Book> onBook;
+        private final Consumer<Reader> onReader;
+        private final StringPool strings;
+        private final LoanPlaceholders loanedBooks;
+        private long validLength;
+        private long records;
+
+        /**
+         * Creates a scan that passes the records to the given consumers, or only validates them if they are null.
+         */
+        Scan(Consumer<Book> onBook, Consumer<Reader> onReader, StringPool strings) {
+            this.onBook = onBook;
+            this.onReader = onReader;
+            this.strings = strings;
+            this.loanedBooks = new LoanPlaceholders(strings);
+        }
+
+        void run(RandomAccessFile journal, long limit) throws IOException {
+            journal.seek(0);
+            CRC32 crc = new CRC32();
+            while (validLength < limit) {
+                byte[] payload;
+                try {
+                    int length = journal.readInt();
+                    int checksum = journal.readInt();
+                    if (length <= 0 || length > journal.length() - journal.getFilePointer()) {
+                        return;
+                    }
+                    payload = new byte[length];
+                    journal.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        return;
+                    }
+                } catch (EOFException e) {
+                    return;
+                }
+                if (onBook != null) {
+                    dispatch(payload);
+                }
+                validLength = journal.getFilePointer();
+                records++;
+            }
+        }
+
+        private void dispatch(byte[] payload) throws IOException {
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = record.readByte();
+            if (type == BOOK_RECORD) {
+                onBook.accept(new Book(strings.canonical(record.readUTF()), strings.canonical(record.readUTF()),
+                        record.readInt(), record.readInt()));
+            } else if (type == READER_RECORD) {
+                Reader reader = new Reader(strings.canonical(record.readUTF()));
+                int loans = record.readInt();
+                for (int i = 0; i < loans; i++) {
+                    reader.restoreLoan(loanedBooks.get(record.readUTF(), record.readUTF()));
+                }
+                onReader.accept(reader);
+            } else {
+                throw new IOException("Unknown journal record type " + type);
+            }
+        }
+    }
+
+    /**
+     * Closes the journal file.
+     * @throws IOException if an I/O error occurs while closing the file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+}
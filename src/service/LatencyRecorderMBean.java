@@ -0,0 +1,55 @@
+package service;
+
+/**
+ * The management interface of a {@link LatencyRecorder}, as published over JMX.
+ */
+public interface LatencyRecorderMBean {
+
+    /**
+     * Returns the number of recorded calls, including failed ones.
+     * @return the number of calls
+     */
+    long getCount();
+
+    /**
+     * Returns the number of recorded calls that failed.
+     * @return the number of failed calls
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the mean latency.
+     * @return the mean latency in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * Returns the highest recorded latency.
+     * @return the highest latency in milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * Returns the median latency.
+     * @return the 50th percentile in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * Returns the 90th percentile of the latency.
+     * @return the 90th percentile in milliseconds
+     */
+    double getP90Millis();
+
+    /**
+     * Returns the 99th percentile of the latency.
+     * @return the 99th percentile in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * Returns the 99.9th percentile of the latency.
+     * @return the 99.9th percentile in milliseconds
+     */
+    double getP999Millis();
+}
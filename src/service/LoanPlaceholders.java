@@ -0,0 +1,34 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import model.Book;
+
+/**
+ * Hands out a single placeholder book per title and author while loans are loaded, so that readers who borrowed
+ * the same book share one object instead of holding a copy each. The controller later replaces the placeholders
+ * with the matching catalog entries. The titles and authors of the placeholders come from a {@link StringPool}.
+ */
+final class LoanPlaceholders {
+    private final Map<String, Book> books = new HashMap<>();
+    private final StringPool strings;
+
+    /**
+     * Creates an empty set of placeholders.
+     * @param strings the pool that canonicalizes the titles and authors of new placeholders
+     */
+    LoanPlaceholders(StringPool strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Returns the placeholder for the book with the given title and author, creating it on first use.
+     * @param title the title of the book
+     * @param author the author of the book
+     * @return the shared placeholder
+     */
+    Book get(String title, String author) {
+        return books.computeIfAbsent(title + '\u0000' + author, key -> new Book(strings.canonical(title), strings.canonical(author), 0, 0));
+    }
+}
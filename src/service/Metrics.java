@@ -0,0 +1,40 @@
+package service;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics of the library as platform MBeans, under the {@value #DOMAIN} domain.
+ */
+public final class Metrics {
+    /**
+     * The JMX domain of every MBean published by the library.
+     */
+    public static final String DOMAIN = "city-library";
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers the given MBean as {@code city-library:type=<type>,name=<name>}, replacing any MBean registered
+     * under that name before.
+     * @param type the kind of metric, such as {@code Operation} or {@code Persistency}
+     * @param name the name of the metric
+     * @param mbean the MBean to register
+     */
+    public static void register(String type, String name, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Appends the current value of every MBean in the {@value Metrics#DOMAIN} domain to a log file at a fixed interval.
+ * Each MBean becomes one line with a timestamp, its name, and its attributes as {@code name=value} pairs.
+ */
+public class MetricsLog implements Closeable {
+    private final Path file;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a metrics log. Nothing is written until the log is started.
+     * @param file the file to append to
+     * @param intervalSeconds the time between two dumps
+     */
+    public MetricsLog(Path file, long intervalSeconds) {
+        this.file = file;
+        this.intervalSeconds = intervalSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts dumping the metrics in the background.
+     */
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::dump, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Appends the current metrics to the log file.
+     */
+    public void dump() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String timestamp = Instant.now().toString();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            Set<ObjectName> names = new TreeSet<>(server.queryNames(new ObjectName(Metrics.DOMAIN + ":*"), null));
+            for (ObjectName name : names) {
+                out.write(timestamp);
+                out.write(' ');
+                out.write(name.getKeyProperty("type") + "." + name.getKeyProperty("name"));
+                for (MBeanAttributeInfo info : server.getMBeanInfo(name).getAttributes()) {
+                    out.write(' ');
+                    out.write(info.getName());
+                    out.write('=');
+                    out.write(String.valueOf(server.getAttribute(name, info.getName())));
+                }
+                out.newLine();
+            }
+        } catch (IOException | JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the background dumps and writes the metrics one last time.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        dump();
+    }
+}
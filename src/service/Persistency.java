@@ -3,24 +3,90 @@ package service;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Supplier;
 
 import model.Book;
 import model.Reader;
+import model.ReaderRegistry;
 
 /**
  * This interface defines the methods for saving and loading data from a file.
  */
 public interface Persistency {
 
+    /**
+     * Saves the given books. Persistencies that save incrementally may be called from several threads at once;
+     * they must read the state of a book and write it under a lock held for that book, so that a save that read
+     * an older state is never written after one that read a newer state.
+     * @param books the books to save
+     * @throws IOException if an I/O error occurs while writing
+     * @throws SQLException if a database error occurs while writing
+     */
     void saveBooks(List<Book> books) throws IOException, SQLException;
 
     void saveReaders(List<Reader> readers) throws IOException, SQLException;
 
+    /**
+     * Saves the complete list of books returned by the given supplier. Persistencies that write in the background
+     * call the supplier when they write, so the caller does not pay for building the list.
+     * @param books the supplier of the complete list of books, reading their current state each time it is called
+     * @throws IOException if an I/O error occurs while writing
+     * @throws SQLException if a database error occurs while writing
+     */
+    default void saveAllBooks(Supplier<List<Book>> books) throws IOException, SQLException {
+        saveBooks(books.get());
+    }
+
+    /**
+     * Saves the complete list of readers returned by the given supplier. Persistencies that write in the background
+     * call the supplier when they write, so the caller does not pay for building the list.
+     * @param readers the supplier of the complete list of readers, reading their current state each time it is called
+     * @throws IOException if an I/O error occurs while writing
+     * @throws SQLException if a database error occurs while writing
+     */
+    default void saveAllReaders(Supplier<List<Reader>> readers) throws IOException, SQLException {
+        saveReaders(readers.get());
+    }
+
     List<Book> loadBooks() throws IOException, ClassNotFoundException, SQLException;
 
-    List<Reader> loadReaders() throws IOException, ClassNotFoundException, SQLException;
+    ReaderRegistry loadReaders() throws IOException, ClassNotFoundException, SQLException;
+
+    /**
+     * Returns true if saves only need the books and readers that changed, false if they need the complete lists.
+     * @return true if the persistency saves changes incrementally
+     */
+    boolean isIncremental();
 
     String getType();
 
+    /**
+     * Waits until all saves issued so far have been written.
+     * Persistencies that write synchronously have nothing to wait for.
+     * @throws IOException if an I/O error occurs while writing
+     * @throws SQLException if a database error occurs while writing
+     */
+    default void flush() throws IOException, SQLException {}
+
+    /**
+     * Returns a value that changes whenever the saved books change. It tells whether a copy of the books kept
+     * elsewhere, such as an off-heap catalog store from an earlier run, still matches the saved data.
+     * Pending saves are written first.
+     * @return the fingerprint of the saved books, or null if the persistency cannot tell when they change
+     * @throws IOException if an I/O error occurs while inspecting the saved data
+     * @throws SQLException if a database error occurs while inspecting the saved data
+     */
+    default String getFingerprint() throws IOException, SQLException {
+        return null;
+    }
+
+    /**
+     * Returns the pool that canonicalizes the strings read while loading, for publishing its statistics.
+     * @return the string pool, or null if the persistency does not pool strings
+     */
+    default StringPool getStringPool() {
+        return null;
+    }
+
     void close() throws SQLException;
 }
\ No newline at end of file
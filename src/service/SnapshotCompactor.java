@@ -0,0 +1,81 @@
+package service;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts the journal of a {@link FilePersistency} into its data files on a background thread.
+ * The journal is checked periodically, and a compaction runs once it reaches a size or record limit,
+ * or once a non-empty journal has not been compacted for a configured interval.
+ * The command loop keeps running while a compaction writes the new files; it only waits for the short moment
+ * in which the journal is cut.
+ */
+public class SnapshotCompactor implements Closeable {
+    private static final long CHECK_PERIOD_SECONDS = 5;
+
+    private final FilePersistency persistency;
+    private final long maxJournalBytes;
+    private final long maxJournalRecords;
+    private final long intervalNanos;
+    private final ScheduledExecutorService scheduler;
+    private long lastCompaction;
+
+    /**
+     * Creates a compactor for the given persistency.
+     * @param persistency the journaled persistency to compact
+     * @param maxJournalBytes the journal size in bytes that triggers a compaction
+     * @param maxJournalRecords the number of journal records that triggers a compaction
+     * @param intervalSeconds the time after which a non-empty journal is compacted regardless of its size
+     */
+    SnapshotCompactor(FilePersistency persistency, long maxJournalBytes, long maxJournalRecords, long intervalSeconds) {
+        this.persistency = persistency;
+        this.maxJournalBytes = maxJournalBytes;
+        this.maxJournalRecords = maxJournalRecords;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts checking the journal periodically.
+     */
+    void start() {
+        lastCompaction = System.nanoTime();
+        scheduler.scheduleWithFixedDelay(this::compactIfNeeded, CHECK_PERIOD_SECONDS, CHECK_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (!persistency.canCompact()) {
+                return;
+            }
+            boolean due = persistency.journalSize() >= maxJournalBytes
+                    || persistency.journalRecordCount() >= maxJournalRecords
+                    || System.nanoTime() - lastCompaction >= intervalNanos;
+            if (due) {
+                persistency.compact();
+                lastCompaction = System.nanoTime();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the compactor, waiting for a running compaction to finish.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes whole snapshot files.
+ * Writes go to a temporary file that is then renamed over the target, so a crash never leaves a half-written snapshot behind.
+ * Loading a file is one bulk read into a heap buffer, after which the file is closed and {@link BinaryCodec} decodes
+ * the records straight from memory, without object streams in between. Files are deliberately not memory-mapped:
+ * a snapshot is decoded once from start to end, so a mapping would save no reading, and it would stay alive until its
+ * buffer is garbage-collected, which on Windows keeps the next write from replacing the file.
+ */
+final class SnapshotFiles {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes the content of a snapshot file.
+     */
+    interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private SnapshotFiles() {}
+
+    /**
+     * Writes a snapshot file atomically.
+     * @param filename the name of the snapshot file
+     * @param writer the writer producing the file content
+     * @throws IOException if an I/O error occurs while writing
+     */
+    static void write(String filename, Writer writer) throws IOException {
+        Path target = Paths.get(filename);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                OutputStream out = new BufferedOutputStream(file, BUFFER_SIZE)) {
+            writer.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns a heap buffer holding a whole snapshot file. The file is closed when this method returns.
+     * @param filename the name of the snapshot file
+     * @return a buffer holding the file content
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IOException if an I/O error occurs while reading
+     */
+    static ByteBuffer read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException(filename + " is too large to load");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer.
+            }
+            return buffer.flip();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Book;
+import model.Reader;
+
+/**
+ * Converts the books and readers files written with Java serialization by earlier versions
+ * into the binary snapshot format of {@link BinaryCodec}.
+ * The legacy files are left in place, so that the migration can be repeated by deleting the new files.
+ */
+final class SnapshotMigrator {
+
+    private SnapshotMigrator() {}
+
+    /**
+     * Migrates a legacy books file, unless the binary snapshot already exists or there is nothing to migrate.
+     * @param legacyFilename the name of the serialized books file
+     * @param snapshotFilename the name of the binary snapshot file to create
+     * @return true if the file was migrated, false otherwise
+     * @throws IOException if an I/O error occurs during the migration
+     * @throws ClassNotFoundException if the legacy file contains unknown classes
+     */
+    static boolean migrateBooks(String legacyFilename, String snapshotFilename) throws IOException, ClassNotFoundException {
+        if (!needsMigration(legacyFilename, snapshotFilename)) {
+            return false;
+        }
+        List<Book> books = readLegacy(legacyFilename, Book.class);
+        SnapshotFiles.write(snapshotFilename, out -> BinaryCodec.writeBooks(books, out));
+        return true;
+    }
+
+    /**
+     * Migrates a legacy readers file, unless the binary snapshot already exists or there is nothing to migrate.
+     * @param legacyFilename the name of the serialized readers file
+     * @param snapshotFilename the name of the binary snapshot file to create
+     * @return true if the file was migrated, false otherwise
+     * @throws IOException if an I/O error occurs during the migration
+     * @throws ClassNotFoundException if the legacy file contains unknown classes
+     */
+    static boolean migrateReaders(String legacyFilename, String snapshotFilename) throws IOException, ClassNotFoundException {
+        if (!needsMigration(legacyFilename, snapshotFilename)) {
+            return false;
+        }
+        List<Reader> readers = readLegacy(legacyFilename, Reader.class);
+        SnapshotFiles.write(snapshotFilename, out -> BinaryCodec.writeReaders(readers, out));
+        return true;
+    }
+
+    private static boolean needsMigration(String legacyFilename, String snapshotFilename) {
+        return new File(legacyFilename).isFile() && !new File(snapshotFilename).exists();
+    }
+
+    private static <T> List<T> readLegacy(String filename, Class<T> typeClass) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
+            List<?> data = (List<?>) in.readObject();
+            List<T> result = new ArrayList<>(data.size());
+            for (Object item : data) {
+                if (typeClass.isInstance(item)) {
+                    result.add(typeClass.cast(item));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizes the titles, authors and names read while data is loaded, so that a value that occurs in many
+ * rows, such as an author with many books or a book borrowed by many readers, is held by a single instance.
+ * The catalog keeps the instance it is given, so the shared strings are also the ones in the catalog's dictionary.
+ * <p>
+ * The pool is filled during a load and released at its end, so its table does not outlive the load.
+ * The counters are kept across loads and estimate how much heap the sharing saved.
+ */
+public class StringPool implements StringPoolMBean {
+    private static final int STRING_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private Map<String, String> strings = new HashMap<>();
+    private long lookups;
+    private long distinct;
+    private long savedBytes;
+
+    /**
+     * Returns the pooled instance equal to the given string, adding the string if it is not pooled yet.
+     * @param value the string to canonicalize, or null
+     * @return the pooled instance, or null if the value is null
+     */
+    public synchronized String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups++;
+        String pooled = strings.putIfAbsent(value, value);
+        if (pooled == null) {
+            distinct++;
+            return value;
+        }
+        if (pooled != value) {
+            savedBytes += sizeOf(value);
+        }
+        return pooled;
+    }
+
+    /**
+     * Drops the pooled strings at the end of a load. The counters are kept.
+     */
+    public synchronized void release() {
+        strings = new HashMap<>();
+    }
+
+    @Override
+    public synchronized long getLookups() {
+        return lookups;
+    }
+
+    @Override
+    public synchronized long getDistinctStrings() {
+        return distinct;
+    }
+
+    @Override
+    public synchronized long getDuplicates() {
+        return lookups - distinct;
+    }
+
+    @Override
+    public synchronized long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public synchronized int getPooledStrings() {
+        return strings.size();
+    }
+
+    /**
+     * Estimates the heap held by a string and its character array, assuming compressed references and
+     * Latin-1 storage for strings without characters above U+00FF.
+     */
+    private static long sizeOf(String value) {
+        int bytes = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytes = value.length() * 2;
+                break;
+            }
+        }
+        return STRING_BYTES + ((ARRAY_HEADER_BYTES + bytes + 7) & ~7);
+    }
+}
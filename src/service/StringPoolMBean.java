@@ -0,0 +1,37 @@
+package service;
+
+/**
+ * The management interface of a {@link StringPool}, as published over JMX.
+ */
+public interface StringPoolMBean {
+
+    /**
+     * Returns the number of strings passed through the pool.
+     * @return the number of lookups
+     */
+    long getLookups();
+
+    /**
+     * Returns the number of lookups that added a new string to the pool.
+     * @return the number of distinct strings seen during loads
+     */
+    long getDistinctStrings();
+
+    /**
+     * Returns the number of lookups that were answered with a string already in the pool.
+     * @return the number of duplicates
+     */
+    long getDuplicates();
+
+    /**
+     * Returns an estimate of the heap that would be held by the duplicate strings if they had not been shared.
+     * @return the estimated saving in bytes
+     */
+    long getSavedBytes();
+
+    /**
+     * Returns the number of strings currently held by the pool, which is 0 between loads.
+     * @return the number of pooled strings
+     */
+    int getPooledStrings();
+}
@@ -0,0 +1,356 @@
+package service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import model.Book;
+import model.Reader;
+import model.ReaderRegistry;
+
+/**
+ * A Persistency that saves in the background on behalf of another Persistency.
+ * <p>
+ * Saves only queue the changes and return immediately. A writer thread takes everything queued so far and hands it to
+ * the underlying persistency in a single {@code saveBooks} and {@code saveReaders} call, so a burst of changes is
+ * committed together. Repeated changes to the same book or reader before they are written are coalesced into one.
+ * For a persistency that saves complete lists, {@link #saveAllBooks(Supplier)} and {@link #saveAllReaders(Supplier)}
+ * only queue the supplier, and the writer builds the list when it writes, so saving costs the command nothing
+ * however large the library is. The number of queued changes is bounded;
+ * once the limit is reached, saves wait for the writer to catch up.
+ * <p>
+ * Changed books and readers are copied when they are queued, so the writer never sees a book or reader while it is
+ * being modified. Complete lists are copied by the writer as it builds them, so they hold the latest state.
+ * A failed write is retried together with later changes. The failure is reported by the next save, after that save's
+ * changes have been queued, or by the next flush.
+ */
+public class WriteBehindPersistency implements Persistency {
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Persistency delegate;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changesQueued = lock.newCondition();
+    private final Condition changesWritten = lock.newCondition();
+    private final Map<Object, Book> pendingBooks = new IdentityHashMap<>();
+    private final Map<Object, Reader> pendingReaders = new IdentityHashMap<>();
+    private Supplier<List<Book>> pendingAllBooks;
+    private Supplier<List<Reader>> pendingAllReaders;
+    private boolean writing;
+    private boolean closed;
+    private Exception failure;
+    private final Thread writer;
+
+    /**
+     * Creates a write-behind stage in front of the given persistency and starts its writer thread.
+     * @param delegate the persistency that performs the actual writes
+     * @param capacity the maximum number of queued changes before saves start to wait
+     */
+    public WriteBehindPersistency(Persistency delegate, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.writer = new Thread(this::writeLoop, "write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void saveBooks(List<Book> books) throws IOException, SQLException {
+        if (!delegate.isIncremental()) {
+            saveAllBooks(() -> books);
+            return;
+        }
+        lock.lock();
+        try {
+            awaitRoom(books.size());
+            for (Book book : books) {
+                pendingBooks.put(book, copyOf(book));
+            }
+            changesQueued.signal();
+            reportFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a save of the complete list of books. The writer calls the supplier when it writes,
+     * and only the latest supplier is kept.
+     * @param books the supplier of the complete list of books
+     * @throws IOException if an earlier background write failed; the save is queued anyway
+     * @throws SQLException if an earlier background write to the database failed; the save is queued anyway
+     */
+    @Override
+    public void saveAllBooks(Supplier<List<Book>> books) throws IOException, SQLException {
+        lock.lock();
+        try {
+            pendingAllBooks = books;
+            changesQueued.signal();
+            reportFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveReaders(List<Reader> readers) throws IOException, SQLException {
+        if (!delegate.isIncremental()) {
+            saveAllReaders(() -> readers);
+            return;
+        }
+        lock.lock();
+        try {
+            awaitRoom(readers.size());
+            for (Reader reader : readers) {
+                pendingReaders.put(reader, copyOf(reader));
+            }
+            changesQueued.signal();
+            reportFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a save of the complete list of readers. The writer calls the supplier when it writes,
+     * and only the latest supplier is kept.
+     * @param readers the supplier of the complete list of readers
+     * @throws IOException if an earlier background write failed; the save is queued anyway
+     * @throws SQLException if an earlier background write to the database failed; the save is queued anyway
+     */
+    @Override
+    public void saveAllReaders(Supplier<List<Reader>> readers) throws IOException, SQLException {
+        lock.lock();
+        try {
+            pendingAllReaders = readers;
+            changesQueued.signal();
+            reportFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getTitle(), book.getAuthor(), book.getAvailableQuantity(), book.getTotalQuantity());
+    }
+
+    private static Reader copyOf(Reader reader) {
+        Reader copy = new Reader(reader.getName());
+        reader.getBorrowedBooks().forEach(copy::restoreLoan);
+        return copy;
+    }
+
+    private void awaitRoom(int changes) throws IOException {
+        while (!closed && pendingBooks.size() + pendingReaders.size() + changes > capacity
+                && pendingBooks.size() + pendingReaders.size() > 0) {
+            try {
+                changesWritten.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to queue changes", e);
+            }
+        }
+        if (closed) {
+            throw new IOException("Persistency is closed");
+        }
+    }
+
+    private void reportFailure() throws IOException, SQLException {
+        Exception reported = failure;
+        failure = null;
+        if (reported instanceof SQLException) {
+            throw (SQLException) reported;
+        }
+        if (reported != null) {
+            throw new IOException("Background save failed: " + reported.getMessage(), reported);
+        }
+    }
+
+    private boolean hasPendingChanges() {
+        return !pendingBooks.isEmpty() || !pendingReaders.isEmpty() || pendingAllBooks != null || pendingAllReaders != null;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Map<Object, Book> books;
+            Map<Object, Reader> readers;
+            Supplier<List<Book>> allBooks;
+            Supplier<List<Reader>> allReaders;
+            lock.lock();
+            try {
+                while (!closed && !hasPendingChanges()) {
+                    changesQueued.awaitUninterruptibly();
+                }
+                if (!hasPendingChanges()) {
+                    return;
+                }
+                books = new LinkedHashMap<>(pendingBooks);
+                readers = new LinkedHashMap<>(pendingReaders);
+                allBooks = pendingAllBooks;
+                allReaders = pendingAllReaders;
+                pendingBooks.clear();
+                pendingReaders.clear();
+                pendingAllBooks = null;
+                pendingAllReaders = null;
+                writing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            Exception error = write(books, readers, allBooks, allReaders);
+
+            lock.lock();
+            try {
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                    books.forEach(pendingBooks::putIfAbsent);
+                    readers.forEach(pendingReaders::putIfAbsent);
+                    if (pendingAllBooks == null) {
+                        pendingAllBooks = allBooks;
+                    }
+                    if (pendingAllReaders == null) {
+                        pendingAllReaders = allReaders;
+                    }
+                }
+                changesWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null && !closed) {
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private Exception write(Map<Object, Book> books, Map<Object, Reader> readers,
+            Supplier<List<Book>> allBooks, Supplier<List<Reader>> allReaders) {
+        try {
+            if (!books.isEmpty()) {
+                delegate.saveBooks(new ArrayList<>(books.values()));
+            }
+            if (allBooks != null) {
+                List<Book> bookList = allBooks.get();
+                List<Book> copies = new ArrayList<>(bookList.size());
+                bookList.forEach(book -> copies.add(copyOf(book)));
+                delegate.saveBooks(copies);
+            }
+            if (!readers.isEmpty()) {
+                delegate.saveReaders(new ArrayList<>(readers.values()));
+            }
+            if (allReaders != null) {
+                List<Reader> readerList = allReaders.get();
+                List<Reader> copies = new ArrayList<>(readerList.size());
+                readerList.forEach(reader -> copies.add(copyOf(reader)));
+                delegate.saveReaders(copies);
+            }
+            return null;
+        } catch (IOException | SQLException | RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every queued change has been written.
+     * @throws IOException if a background write failed, or the wait was interrupted
+     * @throws SQLException if a background write to the database failed
+     */
+    @Override
+    public void flush() throws IOException, SQLException {
+        lock.lock();
+        try {
+            while ((hasPendingChanges() || writing) && failure == null) {
+                try {
+                    changesWritten.await(RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing changes", e);
+                }
+            }
+            reportFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Book> loadBooks() throws IOException, ClassNotFoundException, SQLException {
+        return delegate.loadBooks();
+    }
+
+    @Override
+    public ReaderRegistry loadReaders() throws IOException, ClassNotFoundException, SQLException {
+        return delegate.loadReaders();
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return delegate.isIncremental();
+    }
+
+    @Override
+    public String getType() {
+        return delegate.getType();
+    }
+
+    @Override
+    public String getFingerprint() throws IOException, SQLException {
+        flush();
+        return delegate.getFingerprint();
+    }
+
+    @Override
+    public StringPool getStringPool() {
+        return delegate.getStringPool();
+    }
+
+    /**
+     * Writes the remaining changes, stops the writer thread and closes the underlying persistency.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                pendingBooks.clear();
+                pendingReaders.clear();
+                pendingAllBooks = null;
+                pendingAllReaders = null;
+                changesQueued.signalAll();
+                changesWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writer.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package view;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * A class that implements the {@link MessageView} interface for running scripts without a user.
+ * Messages are written to the same writer as the results of the script's commands, so an error shows up
+ * next to the command that caused it. Messages are always in English, like the results.
+ * The view cannot prompt, so the controller's interactive menu cannot run on it.
+ */
+public class BatchView implements MessageView {
+    private final PrintWriter out;
+    private final ResourceBundle messages;
+
+    /**
+     * Constructs a new instance of the {@code BatchView} class.
+     * @param out the writer that receives the messages
+     */
+    public BatchView(PrintWriter out) {
+        this.out = out;
+        this.messages = ResourceBundle.getBundle("view.messages", Locale.ENGLISH);
+    }
+
+    /**
+     * Writes the message corresponding to the given key in the messages resource bundle.
+     * @param key the key of the message to display
+     */
+    @Override
+    public void displayPropertiesMessage(String key) {
+        out.println(messages.getString(key));
+    }
+
+    /**
+     * Writes the given message.
+     * @param message the message to display
+     */
+    @Override
+    public void displayMessage(String message) {
+        out.println(message);
+    }
+}
@@ -1,9 +1,13 @@
 package view;
 
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.ResourceBundle;
@@ -11,12 +15,18 @@ import java.util.Scanner;
 
 /**
  * A class that implements the {@link View} interface and provides a console-based user interface for the City Library application.
+ * <p>
+ * Output goes through a buffered writer that is flushed once per message, menu or page rather than once per line,
+ * and listings are shown in pages of {@code pageSize} rows, read from the config.properties file.
  */
 public class ConsoleView implements View {
     private static final String CONFIG_FILENAME = "config.properties";
+    private static final int DEFAULT_PAGE_SIZE = 20;
 
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset())));
     private Scanner scanner;
     private ResourceBundle messages;
+    private int pageSize = DEFAULT_PAGE_SIZE;
 
     /**
      * Constructs a new instance of the {@code ConsoleView} class.
@@ -28,7 +38,7 @@ public class ConsoleView implements View {
     }
 
     /**
-     * Reads the language setting from the config.properties file and sets the messages field accordingly.
+     * Reads the language and page size settings from the config.properties file and sets the messages and page size accordingly.
      * If the file cannot be read, displays an error message.
      */
     public void setLocaleFromProperties() {
@@ -42,34 +52,42 @@ public class ConsoleView implements View {
         String chosenLanguage = properties.getProperty("language", "en");
         Locale locale = ("bg".equals(chosenLanguage)) ? Locale.forLanguageTag("bg") : Locale.ENGLISH;
         this.messages = ResourceBundle.getBundle("view.messages", locale);
+
+        try {
+            this.pageSize = Math.max(1, Integer.parseInt(properties.getProperty("pageSize", String.valueOf(DEFAULT_PAGE_SIZE)).trim()));
+        } catch (NumberFormatException e) {
+            this.pageSize = DEFAULT_PAGE_SIZE;
+        }
     }
 
     /**
      * Displays the main menu options to the user.
      */
     public void displayMenu() {
-        System.out.println();
-        displayPropertiesMessage("addReader");
-        displayPropertiesMessage("showReaders");
-        displayPropertiesMessage("addBook");
-        displayPropertiesMessage("showCatalog");
-        displayPropertiesMessage("searchBook");
-        displayPropertiesMessage("markBorrowingBook");
-        displayPropertiesMessage("markReturningBook");
-        displayPropertiesMessage("changeLanguage");
-        displayPropertiesMessage("exit");
+        out.println();
+        printPropertiesMessage("addReader");
+        printPropertiesMessage("showReaders");
+        printPropertiesMessage("addBook");
+        printPropertiesMessage("showCatalog");
+        printPropertiesMessage("searchBook");
+        printPropertiesMessage("markBorrowingBook");
+        printPropertiesMessage("markReturningBook");
+        printPropertiesMessage("changeLanguage");
+        printPropertiesMessage("exit");
+        out.flush();
     }
 
     /**
      * Displays the catalog menu options to the user.
      */
     public void displayCatalogMenu() {
-        System.out.println();
-        displayPropertiesMessage("showAllBooks");
-        displayPropertiesMessage("showAvailableBooks");
-        displayPropertiesMessage("showReadersBooks");
-        displayPropertiesMessage("sortCatalog");
-        displayPropertiesMessage("backToMainMenu");
+        out.println();
+        printPropertiesMessage("showAllBooks");
+        printPropertiesMessage("showAvailableBooks");
+        printPropertiesMessage("showReadersBooks");
+        printPropertiesMessage("sortCatalog");
+        printPropertiesMessage("backToMainMenu");
+        out.flush();
     }
 
     /**
@@ -77,8 +95,13 @@ public class ConsoleView implements View {
      * @param key the key of the message to display
      */
     public void displayPropertiesMessage(String key) {
+        printPropertiesMessage(key);
+        out.flush();
+    }
+
+    private void printPropertiesMessage(String key) {
         try{
-            System.out.println(new String(messages.getString(key).getBytes("ISO-8859-1"), "UTF-8"));
+            out.println(new String(messages.getString(key).getBytes("ISO-8859-1"), "UTF-8"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -89,7 +112,35 @@ public class ConsoleView implements View {
      * @param message the message to display
      */
     public void displayMessage(String message) {
-        System.out.println(message);
+        out.println(message);
+        out.flush();
+    }
+
+    /**
+     * Displays the rows of a page, one per line, and flushes them to the console together.
+     * @param rows the rows of the page
+     */
+    public void displayPage(List<String> rows) {
+        for (String row : rows) {
+            out.println(row);
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the number of rows shown on a page, as set by the pageSize property.
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Asks the user whether to show the next page. Any input but 'q' continues the listing.
+     * @return true if the next page should be shown, false otherwise
+     */
+    public boolean promptForNextPage() {
+        return !promptUserAndReturnInput("nextPage").equalsIgnoreCase("q");
     }
 
     /**
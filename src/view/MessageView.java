@@ -0,0 +1,21 @@
+package view;
+
+/**
+ * The output side of a view: the messages the controller reports without asking the user anything.
+ * Front-ends that run without a user, such as batch scripts, implement only this interface,
+ * so the controller cannot prompt them; interactive front-ends implement {@link View}.
+ */
+public interface MessageView {
+
+    /**
+     * Displays a message based on the given key from the properties file.
+     * @param key the key of the message to display
+     */
+    void displayPropertiesMessage(String key);
+
+    /**
+     * Displays the given message to the user.
+     * @param message the message to display
+     */
+    void displayMessage(String message);
+}
@@ -1,9 +1,12 @@
 package view;
 
+import java.util.List;
+
 /**
- * The View interface defines the methods that a view implementation should provide.
+ * The View interface defines the methods that an interactive view implementation should provide:
+ * the menus, the prompts and paged listings, next to the messages of {@link MessageView}.
  */
-public interface View {
+public interface View extends MessageView {
     
     /**
      * Sets the locale of the view based on the properties file.
@@ -21,16 +24,22 @@ public interface View {
     void displayCatalogMenu();
     
     /**
-     * Displays a message based on the given key from the properties file.
-     * @param key the key of the message to display
+     * Displays one page of a listing, one row per line.
+     * @param rows the rows of the page
      */
-    void displayPropertiesMessage(String key);
-    
+    void displayPage(List<String> rows);
+
+    /**
+     * Returns the number of rows the view shows on a page of a listing.
+     * @return the page size, at least 1
+     */
+    int getPageSize();
+
     /**
-     * Displays the given message to the user.
-     * @param message the message to display
+     * Asks the user whether to show the next page of a listing.
+     * @return true if the next page should be shown, false to stop the listing
      */
-    void displayMessage(String message);
+    boolean promptForNextPage();
     
     /**
      * Prompts the user for a command and returns the input.
@@ -0,0 +1,85 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link OffHeapBookColumns} decodes each distinct title and author once and hands out the same instance.
+ */
+public class OffHeapBookColumnsTest {
+    private static final String FINGERPRINT = "test";
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("columns");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void repeatedReadsReturnTheSameInstance() throws IOException {
+        OffHeapBookColumns columns = new OffHeapBookColumns(null, null);
+        int first = columns.add("Ulysses", "James Joyce", 1, 1);
+        int second = columns.add("Dubliners", "James Joyce", 2, 2);
+
+        String title = columns.title(first);
+        assertEquals("Ulysses", title);
+        assertSame(title, columns.title(first));
+        assertEquals("James Joyce", columns.author(first));
+        assertSame(columns.author(first), columns.author(second));
+        columns.close(null);
+    }
+
+    @Test
+    public void manyDistinctStringsAreAllKeptDecoded() throws IOException {
+        OffHeapBookColumns columns = new OffHeapBookColumns(null, null);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            columns.add("Title " + i, "Author " + i, 1, 1);
+        }
+
+        String[] titles = new String[count];
+        for (int row = 0; row < count; row++) {
+            titles[row] = columns.title(row);
+            columns.author(row);
+        }
+        for (int row = 0; row < count; row++) {
+            assertEquals("Title " + row, titles[row]);
+            assertSame(titles[row], columns.title(row));
+        }
+        columns.close(null);
+    }
+
+    @Test
+    public void restoredStringsAreDecodedOnce() throws IOException {
+        OffHeapBookColumns columns = new OffHeapBookColumns(directory, FINGERPRINT);
+        columns.add("Ulysses", "James Joyce", 1, 1);
+        columns.add("Dubliners", "James Joyce", 2, 2);
+        columns.close(FINGERPRINT);
+
+        OffHeapBookColumns restored = new OffHeapBookColumns(directory, FINGERPRINT);
+        assertTrue(restored.isRestored());
+        assertEquals("Dubliners", restored.title(1));
+        assertSame(restored.title(1), restored.title(1));
+        assertSame(restored.author(0), restored.author(1));
+        restored.close(FINGERPRINT);
+    }
+}
@@ -0,0 +1,291 @@
+package service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests {@link ConnectionPool} against a stand-in JDBC driver registered with {@link DriverManager}.
+ */
+public class ConnectionPoolTest {
+    private static final String URL = "jdbc:stub:library";
+    private static final long LONG_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    private static StubDriver driver;
+
+    private ConnectionPool pool;
+
+    @BeforeClass
+    public static void registerDriver() throws SQLException {
+        driver = new StubDriver();
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterClass
+    public static void deregisterDriver() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Before
+    public void clearOpenedConnections() {
+        driver.opened.clear();
+    }
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void opensMinimumNumberOfConnections() throws SQLException {
+        pool = new ConnectionPool(URL, "user", "secret", 2, 4, 1000, LONG_IDLE_TIMEOUT_MILLIS);
+
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertEquals(2, driver.opened.size());
+        assertEquals(2, statistics.getTotal());
+        assertEquals(2, statistics.getIdle());
+        assertEquals(0, statistics.getActive());
+        assertEquals("user", driver.opened.get(0).info.getProperty("user"));
+        assertEquals("secret", driver.opened.get(0).info.getProperty("password"));
+    }
+
+    @Test
+    public void deadIdleConnectionIsReplacedOnBorrow() throws SQLException {
+        pool = new ConnectionPool(URL, null, null, 1, 2, 1000, LONG_IDLE_TIMEOUT_MILLIS);
+        StubConnection dead = driver.opened.get(0);
+        dead.valid = false;
+
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+
+        assertTrue(dead.closed);
+        assertEquals(2, driver.opened.size());
+        assertFalse(driver.opened.get(1).closed);
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertEquals(1, statistics.getValidationFailures());
+        assertEquals(2, statistics.getCreated());
+        assertEquals(1, statistics.getDestroyed());
+        assertEquals(1, statistics.getTotal());
+        assertEquals(1, statistics.getIdle());
+    }
+
+    @Test
+    public void idleConnectionsAboveMinimumAreEvicted() throws Exception {
+        pool = new ConnectionPool(URL, null, null, 1, 3, 1000, 50);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Connection third = pool.getConnection();
+        first.close();
+        second.close();
+        third.close();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getStatistics().getTotal() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertEquals(1, statistics.getTotal());
+        assertEquals(1, statistics.getIdle());
+        assertEquals(2, statistics.getDestroyed());
+        assertEquals(2, driver.opened.stream().filter(connection -> connection.closed).count());
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        pool = new ConnectionPool(URL, null, null, 0, 1, 100, LONG_IDLE_TIMEOUT_MILLIS);
+        Connection borrowed = pool.getConnection();
+
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            fail("Expected the borrow to time out");
+        } catch (SQLTransientConnectionException e) {
+            assertTrue(System.nanoTime() - start >= 90_000_000L);
+        }
+        assertEquals(1, pool.getStatistics().getTimeouts());
+
+        borrowed.close();
+        try (Connection connection = pool.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+        assertEquals(1, driver.opened.size());
+    }
+
+    @Test
+    public void statisticsFollowBorrowsAndReturns() throws SQLException {
+        pool = new ConnectionPool(URL, null, null, 1, 2, 1000, LONG_IDLE_TIMEOUT_MILLIS);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertEquals(2, statistics.getTotal());
+        assertEquals(0, statistics.getIdle());
+        assertEquals(2, statistics.getActive());
+        assertEquals(2, statistics.getCreated());
+        assertEquals(2, statistics.getAcquired());
+
+        first.close();
+        first.close();
+        assertTrue(first.isClosed());
+        statistics = pool.getStatistics();
+        assertEquals(1, statistics.getIdle());
+        assertEquals(1, statistics.getActive());
+
+        second.setAutoCommit(false);
+        second.close();
+        StubConnection reset = driver.opened.get(1);
+        assertTrue(reset.rolledBack);
+        assertTrue(reset.autoCommit);
+
+        pool.close();
+        statistics = pool.getStatistics();
+        assertEquals(0, statistics.getTotal());
+        assertEquals(2, statistics.getDestroyed());
+        assertEquals(0, statistics.getTimeouts());
+        assertEquals(0, statistics.getValidationFailures());
+        try {
+            pool.getConnection();
+            fail("Expected a closed pool to refuse borrows");
+        } catch (SQLException e) {
+            assertEquals("Connection pool is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void connectionReturnedWhilePoolClosesIsClosed() throws SQLException {
+        pool = new ConnectionPool(URL, null, null, 0, 2, 1000, LONG_IDLE_TIMEOUT_MILLIS);
+        Connection borrowed = pool.getConnection();
+        StubConnection stub = driver.opened.get(0);
+        stub.onGetAutoCommit = pool::close;
+
+        borrowed.close();
+
+        assertTrue(stub.closed);
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertEquals(0, statistics.getTotal());
+        assertEquals(0, statistics.getIdle());
+        assertEquals(1, statistics.getDestroyed());
+    }
+
+    /**
+     * A driver for {@code jdbc:stub:} URLs that opens {@link StubConnection}s and remembers them.
+     */
+    private static final class StubDriver implements Driver {
+        private final List<StubConnection> opened = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            StubConnection connection = new StubConnection(info);
+            opened.add(connection);
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> connection.invoke(proxy, method.getName(), args));
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:stub:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    /**
+     * The state behind a stub connection. Only the calls the pool makes are supported.
+     */
+    private static final class StubConnection {
+        private final Properties info;
+        private volatile boolean valid = true;
+        private volatile boolean closed;
+        private volatile boolean autoCommit = true;
+        private volatile boolean rolledBack;
+        private volatile Runnable onGetAutoCommit;
+
+        StubConnection(Properties info) {
+            this.info = info;
+        }
+
+        Object invoke(Object proxy, String method, Object[] args) throws SQLException {
+            switch (method) {
+                case "isValid":
+                    return valid && !closed;
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getAutoCommit":
+                    Runnable hook = onGetAutoCommit;
+                    if (hook != null) {
+                        hook.run();
+                    }
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "rollback":
+                    rolledBack = true;
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StubConnection";
+                default:
+                    throw new SQLFeatureNotSupportedException(method);
+            }
+        }
+    }
+}
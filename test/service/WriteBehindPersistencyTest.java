@@ -0,0 +1,181 @@
+package service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import model.Book;
+import model.Reader;
+import model.ReaderRegistry;
+
+/**
+ * Tests {@link WriteBehindPersistency} in front of a stand-in persistency whose writes can be made to fail.
+ */
+public class WriteBehindPersistencyTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private WriteBehindPersistency writeBehind;
+
+    @After
+    public void closeWriteBehind() throws SQLException {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Test
+    public void changeSavedWhileWriteFailsIsWrittenAfterRetry() throws Exception {
+        StubPersistency stub = new StubPersistency(true);
+        writeBehind = new WriteBehindPersistency(stub, 100);
+        Book first = new Book("Ulysses", "James Joyce", 1, 1);
+        Book second = new Book("The Odyssey", "Homer", 2, 2);
+
+        stub.failing = true;
+        writeBehind.saveBooks(Collections.singletonList(first));
+        awaitFailedWrite(stub);
+
+        second.borrowCopy();
+        stub.failing = false;
+        try {
+            writeBehind.saveBooks(Collections.singletonList(second));
+            fail("Expected the earlier failure to be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Background save failed"));
+        }
+        writeBehind.flush();
+
+        Book written = stub.lastWritten("The Odyssey");
+        assertEquals(1, written.getAvailableQuantity());
+        assertEquals(2, written.getTotalQuantity());
+        assertEquals(1, stub.lastWritten("Ulysses").getAvailableQuantity());
+    }
+
+    @Test
+    public void completeListSavedWhileWriteFailsIsWrittenAfterRetry() throws Exception {
+        StubPersistency stub = new StubPersistency(false);
+        writeBehind = new WriteBehindPersistency(stub, 100);
+        List<Book> catalog = new CopyOnWriteArrayList<>();
+        catalog.add(new Book("Ulysses", "James Joyce", 1, 1));
+
+        stub.failing = true;
+        writeBehind.saveAllBooks(() -> new ArrayList<>(catalog));
+        awaitFailedWrite(stub);
+
+        catalog.add(new Book("The Odyssey", "Homer", 2, 2));
+        stub.failing = false;
+        try {
+            writeBehind.saveAllBooks(() -> new ArrayList<>(catalog));
+            fail("Expected the earlier failure to be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Background save failed"));
+        }
+        writeBehind.flush();
+
+        assertEquals(2, stub.lastSave.size());
+        Book written = stub.lastWritten("The Odyssey");
+        assertEquals(2, written.getAvailableQuantity());
+        assertNotSame(catalog.get(1), written);
+    }
+
+    @Test
+    public void completeListIsReadByTheWriter() throws Exception {
+        StubPersistency stub = new StubPersistency(false);
+        writeBehind = new WriteBehindPersistency(stub, 100);
+        Book book = new Book("Ulysses", "James Joyce", 3, 3);
+        Thread caller = Thread.currentThread();
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+
+        writeBehind.saveAllBooks(() -> {
+            readers.add(Thread.currentThread());
+            return Collections.singletonList(book);
+        });
+        writeBehind.flush();
+
+        assertEquals(1, readers.size());
+        assertNotSame(caller, readers.get(0));
+        assertEquals(3, stub.lastWritten("Ulysses").getAvailableQuantity());
+    }
+
+    private static void awaitFailedWrite(StubPersistency stub) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (stub.failedWrites == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, stub.failedWrites);
+        // The failure is recorded right after the write returns; the retry follows a second later.
+        Thread.sleep(100);
+    }
+
+    /**
+     * A persistency that keeps the books it was asked to save, or fails while {@code failing} is set.
+     */
+    private static final class StubPersistency implements Persistency {
+        private final boolean incremental;
+        private final List<Book> written = new CopyOnWriteArrayList<>();
+        private volatile List<Book> lastSave = Collections.emptyList();
+        private volatile boolean failing;
+        private volatile int failedWrites;
+
+        StubPersistency(boolean incremental) {
+            this.incremental = incremental;
+        }
+
+        Book lastWritten(String title) {
+            for (int i = written.size() - 1; i >= 0; i--) {
+                if (written.get(i).getTitle().equals(title)) {
+                    return written.get(i);
+                }
+            }
+            throw new AssertionError(title + " was never written");
+        }
+
+        @Override
+        public void saveBooks(List<Book> books) throws IOException {
+            if (failing) {
+                failedWrites++;
+                throw new IOException("disk full");
+            }
+            written.addAll(books);
+            lastSave = books;
+        }
+
+        @Override
+        public void saveReaders(List<Reader> readers) {
+        }
+
+        @Override
+        public List<Book> loadBooks() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public ReaderRegistry loadReaders() {
+            return new ReaderRegistry();
+        }
+
+        @Override
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        @Override
+        public String getType() {
+            return "stub";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}